@@ -0,0 +1,81 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// preprocessData + calculateClutchness end to end on a local SparkSession. The data is a fixed seed
+// PlayByPlayGenerator season, written once per fork and read + cached in setup, so the measured part is the
+// PlayEvent decode, the margin window and clutch filters, the event code classification and eWPA lookups (all
+// StaticInvokes and plain expressions, no UDFs), the explodes and the rollup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms2g", "-Xmx2g",
+        // Spark 3.2 needs these to run on newer JDKs
+        "--add-opens=java.base/java.lang=ALL-UNNAMED",
+        "--add-opens=java.base/java.lang.invoke=ALL-UNNAMED",
+        "--add-opens=java.base/java.io=ALL-UNNAMED",
+        "--add-opens=java.base/java.net=ALL-UNNAMED",
+        "--add-opens=java.base/java.nio=ALL-UNNAMED",
+        "--add-opens=java.base/java.util=ALL-UNNAMED",
+        "--add-opens=java.base/java.util.concurrent=ALL-UNNAMED",
+        "--add-opens=java.base/sun.nio.ch=ALL-UNNAMED",
+        "--add-opens=java.base/sun.nio.cs=ALL-UNNAMED",
+        "--add-opens=java.base/sun.security.action=ALL-UNNAMED",
+        "--add-opens=java.base/sun.util.calendar=ALL-UNNAMED"})
+public class PipelineBenchmark {
+
+    @Param({"500"})
+    public int games;
+
+    @Param({"local[4]"})
+    public String master;
+
+    private Path dir;
+    private SparkSession spark;
+    private Dataset<Row> raw;
+    private EwpaWeights weights;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("pbp-bench");
+        PlayByPlayGenerator.write(dir, 2019, 1, games, 435);
+
+        spark = SparkSession.builder()
+                .appName("NBA clutch benchmark")
+                .master(master)
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+        spark.sparkContext().setLogLevel("WARN");
+        weights = EwpaWeights.defaults();
+
+        raw = NBABigData.readData(spark, dir.toString()).cache();
+        raw.count();
+    }
+
+    @Benchmark
+    public long preprocessAndScore() {
+        Dataset<Row> df = NBABigData.preprocessData(raw, spark);
+        return NBABigData.calculateClutchness(df, spark, weights).all().count();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        spark.stop();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.csu.cs435;
+
+import org.apache.spark.unsafe.types.UTF8String;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per event functions the pipeline calls for every row. Each invocation handles one sample row,
+// cycling through PlayByPlaySamples so hit rates match a real late game mix.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RowBenchmark {
+
+    private PlayByPlaySamples.Sample[] samples;
+    private String[] eventLabels;
+    private UTF8String[] clocks;
+    // Already boxed the way Spark passes them, so classifyEvent doesn't measure parsing or boxing
+    private Integer[] secondsRemaining;
+    private Integer[] margins;
+    private int next;
+
+    @Setup
+    public void setup() {
+        samples = PlayByPlaySamples.SAMPLES;
+        eventLabels = EventCode.labels();
+        clocks = new UTF8String[samples.length];
+        secondsRemaining = new Integer[samples.length];
+        margins = new Integer[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            // PCTIMESTRING the way decodeRows gets it from Spark
+            clocks[i] = UTF8String.fromString(samples[i].clock);
+            secondsRemaining[i] = samples[i].secondsRemaining();
+            margins[i] = samples[i].margin();
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == samples.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public List<String> classifyEvent() {
+        int i = nextIndex();
+        PlayByPlaySamples.Sample sample = samples[i];
+        return NBABigData.classifyEvent(sample.eventMsgType, sample.eventMsgActionType,
+                sample.homeDescription == null ? "" : sample.homeDescription,
+                sample.visitorDescription == null ? "" : sample.visitorDescription,
+                secondsRemaining[i], margins[i],
+                sample.playerNames[0], sample.playerNames[1], sample.playerNames[2]);
+    }
+
+    // All of the description helpers on one row, upper cased the way classifyEvent used to do it
+    @Benchmark
+    public void descriptionHelpers(Blackhole blackhole) {
+        PlayByPlaySamples.Sample sample = samples[nextIndex()];
+        String home = sample.homeDescription == null ? "" : sample.homeDescription.toUpperCase();
+        String visitor = sample.visitorDescription == null ? "" : sample.visitorDescription.toUpperCase();
+        blackhole.consume(NBABigData.isThreePointer(home, visitor));
+        blackhole.consume(NBABigData.isTwoPointer(home, visitor));
+        blackhole.consume(NBABigData.isMissedShot(home, visitor));
+        blackhole.consume(NBABigData.isFreeThrow(home, visitor));
+        blackhole.consume(NBABigData.isRebound(home, visitor));
+        blackhole.consume(NBABigData.isTurnover(home, visitor));
+        blackhole.consume(NBABigData.isAssist(home, visitor));
+        blackhole.consume(NBABigData.isSteal(home, visitor));
+        blackhole.consume(NBABigData.isBlock(home, visitor));
+    }
+
+    // The same token checks as one DescriptionTokens scan per description
+    @Benchmark
+    public int descriptionTokens() {
+        PlayByPlaySamples.Sample sample = samples[nextIndex()];
+        return DescriptionTokens.of(sample.homeDescription == null ? "" : sample.homeDescription,
+                sample.visitorDescription == null ? "" : sample.visitorDescription);
+    }
+
+    @Benchmark
+    public short clockSeconds() {
+        return PlayEvent.clockSeconds(clocks[nextIndex()]);
+    }
+
+    @Benchmark
+    public double getEwpaValue() {
+        int i = next;
+        next = i + 1 == eventLabels.length ? 0 : i + 1;
+        return NBABigData.getEwpaValue(eventLabels[i]);
+    }
+}
@@ -0,0 +1,140 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Runs the job (read, preprocessData, calculateClutchness) under local[c] for each core count and
+// spark.sql.shuffle.partitions value, and reports input rows/sec plus scaling efficiency against the
+// smallest core count at the same partition count.
+//   java -cp benchmarks.jar org.csu.cs435.ScalingHarness <data dir> [options]
+//   --games=N          generate N games per season into <data dir> first (with --seasons, --seed)
+//   --cores=1,2,4      core counts to try (default 1, 2, 4, ... up to all cores)
+//   --partitions=8,64  shuffle partition counts (default 8,64,200)
+//   --repeat=3         timed runs per setting, the median is reported
+//   --single-pass      time the GameProcessor path instead of the window path
+//   --out=<file>       also write the results as CSV
+public final class ScalingHarness {
+
+    private ScalingHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        JobOptions options = JobOptions.parse(args);
+        String input = options.inputPath();
+        if (options.has("games")) {
+            long rows = PlayByPlayGenerator.write(Paths.get(input), options.getInt("first-season", 2019),
+                    options.getInt("seasons", 1), options.getInt("games", 0), options.getInt("seed", 435));
+            System.out.println("Generated " + rows + " rows into " + input);
+        }
+
+        int[] cores = intList(options.get("cores", null), defaultCores());
+        int[] partitions = intList(options.get("partitions", null), new int[]{8, 64, 200});
+        int repeat = options.getInt("repeat", 3);
+        boolean singlePass = options.has("single-pass");
+
+        long inputRows = countRows(input);
+        System.out.println("Input rows: " + inputRows);
+
+        // One untimed run so class loading and JIT don't land on the first setting
+        runOnce(input, cores[cores.length - 1], partitions[0], singlePass);
+
+        List<double[]> results = new ArrayList<>();
+        for (int partitionCount : partitions) {
+            double baseRate = 0;
+            for (int coreCount : cores) {
+                double[] seconds = new double[repeat];
+                for (int r = 0; r < repeat; r++) {
+                    seconds[r] = runOnce(input, coreCount, partitionCount, singlePass);
+                }
+                Arrays.sort(seconds);
+                double median = seconds[repeat / 2];
+                double rate = inputRows / median;
+                if (baseRate == 0) {
+                    baseRate = rate / cores[0];
+                }
+                // Efficiency 1.0 means rows/sec grew exactly with the core count
+                double efficiency = rate / (baseRate * coreCount);
+                results.add(new double[]{coreCount, partitionCount, median, rate, efficiency});
+                System.out.printf("local[%d] partitions=%d: %.2fs, %.0f rows/sec, efficiency %.2f%n",
+                        coreCount, partitionCount, median, rate, efficiency);
+            }
+        }
+
+        System.out.println();
+        System.out.println("cores  partitions  seconds    rows/sec  efficiency");
+        for (double[] result : results) {
+            System.out.printf("%5d  %10d  %7.2f  %10.0f  %10.2f%n",
+                    (int) result[0], (int) result[1], result[2], result[3], result[4]);
+        }
+
+        if (options.has("out")) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("out", null)), StandardCharsets.UTF_8))) {
+                out.println("cores,partitions,seconds,rows_per_sec,efficiency");
+                for (double[] result : results) {
+                    out.printf(Locale.ROOT, "%d,%d,%.3f,%.1f,%.4f%n",
+                            (int) result[0], (int) result[1], result[2], result[3], result[4]);
+                }
+            }
+        }
+    }
+
+    private static double runOnce(String input, int cores, int partitions, boolean singlePass) {
+        SparkSession spark = session(cores, partitions);
+        try {
+            long start = System.nanoTime();
+            Dataset<Row> raw = NBABigData.readData(spark, input);
+            Dataset<Row> scores = singlePass
+                    ? NBABigData.scorePlayerEvents(GameProcessor.playerEvents(NBABigData.decodeRows(raw), EwpaWeights.defaults())).all()
+                    : NBABigData.calculateClutchness(NBABigData.preprocessData(raw, spark), spark, EwpaWeights.defaults()).all();
+            scores.count();
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            spark.stop();
+        }
+    }
+
+    private static long countRows(String input) {
+        SparkSession spark = session(Runtime.getRuntime().availableProcessors(), 8);
+        try {
+            return spark.read().option("header", "true").csv(input.endsWith(".csv") ? input : input + "/*.csv").count();
+        } finally {
+            spark.stop();
+        }
+    }
+
+    private static SparkSession session(int cores, int partitions) {
+        SparkSession spark = SparkSession.builder()
+                .appName("NBA clutch scaling")
+                .master("local[" + cores + "]")
+                .config("spark.sql.shuffle.partitions", partitions)
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+        spark.sparkContext().setLogLevel("WARN");
+        return spark;
+    }
+
+    private static int[] defaultCores() {
+        int max = Runtime.getRuntime().availableProcessors();
+        List<Integer> cores = new ArrayList<>();
+        for (int c = 1; c < max; c *= 2) {
+            cores.add(c);
+        }
+        cores.add(max);
+        return cores.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] intList(String value, int[] defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
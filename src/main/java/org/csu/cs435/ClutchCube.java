@@ -0,0 +1,66 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+
+import java.util.function.IntFunction;
+
+import static org.apache.spark.sql.functions.*;
+
+// Pre-aggregated eWPA sums and event counts, so slicing the clutch scores by season, season type or event type
+// doesn't need the pipeline again. Written with --cube=<dir>, queried with ClutchCubeQuery.
+// One row per PLAYER_ID x SEASON x SEASON_TYPE x EVENT_CODE, where the code splits into EVENT_TYPE and TIMING
+// (Normal, Last 10 Seconds or Clutch Margin). Only the player credited for an event counts it, so EVENTS is how
+// many of that event the player got the eWPA for and eWPA is the sum of it.
+//   <dir>/SEASON=<year>/  Parquet: PLAYER_ID, PLAYER_NAME, SEASON_TYPE, EVENT_CODE, EVENT_TYPE, TIMING, EVENTS, eWPA
+// A write only replaces the seasons in that run's data and keeps the rest, so adding a season means running
+// the job over just that season's files. A run has to include all games of the seasons it covers.
+public final class ClutchCube {
+
+    static final String SEASON = "SEASON";
+
+    private ClutchCube() {
+    }
+
+    public static void write(SparkSession spark, Dataset<Row> playerData, EwpaWeights weights, String dir) {
+        Dataset<Row> credited = playerData.filter(col("PLAYER_ID").isNotNull()
+                .and(col("PLAYER_SLOT").equalTo(weights.creditedPlayer(col("EVENT_CODE")))));
+
+        Dataset<Row> cube = credited
+                .withColumn(SEASON, PlayByPlaySchema.season(col("GAME_ID")))
+                .groupBy(SEASON, "PLAYER_ID", "SEASON_TYPE", "EVENT_CODE")
+                .agg(max("PLAYER_NAME").alias("PLAYER_NAME"),
+                        count(lit(1)).alias("EVENTS"),
+                        sum("eWPA").alias("eWPA"))
+                .select(col("PLAYER_ID"), col("PLAYER_NAME"), col("SEASON_TYPE"), col("EVENT_CODE"),
+                        lookup(col("EVENT_CODE"), EventCode::eventType).alias("EVENT_TYPE"),
+                        lookup(col("EVENT_CODE"), EventCode::timing).alias("TIMING"),
+                        col("EVENTS"), col("eWPA"), col(SEASON));
+
+        // Dynamic overwrite only swaps out the SEASON directories this run has rows for. The cube is small,
+        // one file per season is plenty
+        cube.repartition(col(SEASON))
+                .write()
+                .mode(SaveMode.Overwrite)
+                .option("partitionOverwriteMode", "dynamic")
+                .partitionBy(SEASON)
+                .parquet(dir);
+        System.out.println("Updated clutch cube in " + dir);
+    }
+
+    public static Dataset<Row> read(SparkSession spark, String dir) {
+        return spark.read().parquet(dir);
+    }
+
+    // Per code string for an EventCode column, as a literal array like EventClassifier.label
+    private static Column lookup(Column eventCode, IntFunction<String> value) {
+        Column[] literals = new Column[EventCode.COUNT];
+        for (int code = 0; code < EventCode.COUNT; code++) {
+            literals[code] = lit(value.apply(code));
+        }
+        return element_at(array(literals), eventCode.plus(1));
+    }
+}
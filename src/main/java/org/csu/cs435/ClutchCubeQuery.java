@@ -0,0 +1,143 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.expressions.Window;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.apache.spark.sql.functions.*;
+
+// Rollups and top-K lists straight from a ClutchCube, never touching the play-by-play.
+//   ClutchCubeQuery <cube dir> [options]
+//   --by=player,season       dimensions to keep, the rest are rolled up: player, season, season-type, event-type,
+//                            timing (default player)
+//   --season=2019            only these seasons, a single year or a range like 2015-2019
+//   --season-type=Finals     only these season types (comma separated), same for --event-type and --timing
+//   --player=Name|ID         only these players (comma separated)
+//   --top=10                 rows to show, ranked by eWPA (default 20)
+//   --per=season             top K within each value of these dimensions instead of overall
+//   --weights=<file>         rescore with other eWPA weights from the event counts, same file format as the job
+// e.g. top 5 clutch players of every Finals: --season-type=Finals --by=player --per=season --top=5
+public final class ClutchCubeQuery {
+
+    private static final Map<String, String> DIMENSIONS = new LinkedHashMap<>();
+
+    static {
+        DIMENSIONS.put("player", "PLAYER_ID");
+        DIMENSIONS.put("season", ClutchCube.SEASON);
+        DIMENSIONS.put("season-type", "SEASON_TYPE");
+        DIMENSIONS.put("event-type", "EVENT_TYPE");
+        DIMENSIONS.put("timing", "TIMING");
+    }
+
+    private ClutchCubeQuery() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        JobOptions options = JobOptions.parse(args);
+        SparkSession spark = SparkSession.builder()
+                .appName("NBA Clutch Cube Query")
+                .master("local[*]")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+        spark.sparkContext().setLogLevel("WARN");
+
+        Dataset<Row> cube = filter(ClutchCube.read(spark, options.inputPath()), options);
+        if (options.has("weights")) {
+            cube = rescore(cube, EwpaWeights.load(spark, options.get("weights", null)));
+        }
+
+        List<String> per = dimensions(options.get("per", ""));
+        Set<String> by = new LinkedHashSet<>(per);
+        by.addAll(dimensions(options.get("by", "player")));
+
+        int top = options.getInt("top", 20);
+        Dataset<Row> result = top(rollup(cube, new ArrayList<>(by)), top, per);
+        result.show(per.isEmpty() ? top : Integer.MAX_VALUE, false);
+        spark.stop();
+    }
+
+    // Sums EVENTS and eWPA over everything but the `by` columns, PLAYER_NAME comes along when PLAYER_ID is kept
+    public static Dataset<Row> rollup(Dataset<Row> cube, List<String> by) {
+        List<Column> groups = new ArrayList<>();
+        for (String column : by) {
+            groups.add(col(column));
+        }
+        List<Column> aggregates = new ArrayList<>();
+        if (by.contains("PLAYER_ID")) {
+            aggregates.add(max("PLAYER_NAME").alias("PLAYER_NAME"));
+        }
+        aggregates.add(sum("EVENTS").alias("EVENTS"));
+        aggregates.add(sum("eWPA").alias("eWPA"));
+        return cube.groupBy(groups.toArray(new Column[0]))
+                .agg(aggregates.get(0), aggregates.subList(1, aggregates.size()).toArray(new Column[0]));
+    }
+
+    // Highest eWPA first, the first k overall or the first k for each value of `per`
+    public static Dataset<Row> top(Dataset<Row> rolledUp, int k, List<String> per) {
+        if (per.isEmpty()) {
+            return rolledUp.orderBy(desc("eWPA")).limit(k);
+        }
+        Column[] partition = per.stream().map(column -> col(column)).toArray(Column[]::new);
+        List<Column> order = new ArrayList<>(Arrays.asList(partition));
+        order.add(col("RANK"));
+        return rolledUp
+                .withColumn("RANK", row_number().over(Window.partitionBy(partition).orderBy(desc("eWPA"))))
+                .filter(col("RANK").leq(k))
+                .orderBy(order.toArray(new Column[0]));
+    }
+
+    // eWPA from the event counts and another weight table instead of the weights the cube was built with
+    public static Dataset<Row> rescore(Dataset<Row> cube, EwpaWeights weights) {
+        return cube.withColumn("eWPA", col("EVENTS").multiply(weights.weight(col("EVENT_CODE"))));
+    }
+
+    private static Dataset<Row> filter(Dataset<Row> cube, JobOptions options) {
+        int[] seasons = options.getRange("season");
+        if (seasons != null) {
+            // SEASON is the partition column, so this only reads those directories
+            cube = cube.filter(col(ClutchCube.SEASON).between(seasons[0], seasons[1]));
+        }
+        cube = filterIn(cube, "SEASON_TYPE", options.get("season-type", null));
+        cube = filterIn(cube, "EVENT_TYPE", options.get("event-type", null));
+        cube = filterIn(cube, "TIMING", options.get("timing", null));
+        if (options.has("player")) {
+            Column players = lit(false);
+            for (String player : options.get("player", null).split(",")) {
+                String key = player.trim();
+                players = players.or(key.matches("\\d+")
+                        ? col("PLAYER_ID").equalTo(Integer.parseInt(key))
+                        : lower(col("PLAYER_NAME")).equalTo(key.toLowerCase(Locale.ROOT)));
+            }
+            cube = cube.filter(players);
+        }
+        return cube;
+    }
+
+    private static Dataset<Row> filterIn(Dataset<Row> cube, String column, String values) {
+        if (values == null) {
+            return cube;
+        }
+        Object[] list = Arrays.stream(values.split(",")).map(String::trim).toArray();
+        return cube.filter(col(column).isin(list));
+    }
+
+    private static List<String> dimensions(String names) {
+        List<String> columns = new ArrayList<>();
+        for (String name : names.split(",")) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            String column = DIMENSIONS.get(name.trim());
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown cube dimension: " + name + ", expected one of " + DIMENSIONS.keySet());
+            }
+            columns.add(column);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,56 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.functions;
+
+import java.util.Arrays;
+
+import static org.apache.spark.sql.functions.col;
+
+// Every output of a run, all read from the same materialized player events and scores.
+//   --players=Name,Name      players whose clutch events get dumped (default John Stockton)
+//   --top-season-type=N      rows in the per season type top list (default 10)
+//   --top-career=N           rows in the career top list (default 100)
+//   --report-dir=<dir>       also write the lists, the event dumps and the full scores table as CSV
+public final class ClutchReport {
+
+    private ClutchReport() {
+    }
+
+    public static void write(JobOptions options, Dataset<Row> playerData, ClutchScores clutchScores) {
+        String[] players = options.get("players", "John Stockton").split(",");
+        int topSeasonType = options.getInt("top-season-type", 10);
+        int topCareer = options.getInt("top-career", 100);
+        String reportDir = options.get("report-dir", null);
+
+        Dataset<Row> playerEvents = playerData.filter(col("PLAYER_NAME").isin((Object[]) players));
+        playerEvents.show(100, false);
+
+        // Show the top 10 players by Adjusted Clutchness Score
+        Dataset<Row> topSeasonTypeScores = clutchScores.seasonTypeScores()
+                .orderBy(functions.desc("Adjusted_eWPA")).limit(topSeasonType);
+        System.out.println("Top " + topSeasonType + " Players by Adjusted Clutchness Score:");
+        topSeasonTypeScores.show(topSeasonType);
+
+        // Show the top players by total clutch score
+        Dataset<Row> topCareerScores = clutchScores.careerScores()
+                .orderBy(functions.desc("Total_ClutchScore")).limit(topCareer);
+        System.out.println("Top " + topCareer + " Players overall season Adjusted Clutchness Score:");
+        topCareerScores.show(topCareer);
+
+        if (reportDir != null) {
+            System.out.println("Writing report for " + Arrays.toString(players) + " to " + reportDir);
+            writeCsv(playerEvents.coalesce(1), reportDir + "/player_events");
+            writeCsv(topSeasonTypeScores.coalesce(1), reportDir + "/top_season_type");
+            writeCsv(topCareerScores.coalesce(1), reportDir + "/top_career");
+            writeCsv(clutchScores.seasonTypeScores(), reportDir + "/season_type_scores");
+            writeCsv(clutchScores.careerScores(), reportDir + "/career_scores");
+        }
+    }
+
+    private static void writeCsv(Dataset<Row> df, String path) {
+        df.write().mode(SaveMode.Overwrite).option("header", "true").csv(path);
+    }
+}
@@ -0,0 +1,34 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+
+import static org.apache.spark.sql.functions.col;
+
+// Both aggregation levels that come out of the single rollup in NBABigData.scorePlayerEvents.
+// They share one table so materializing it once covers both.
+public final class ClutchScores {
+
+    // PLAYER_ID, SEASON_TYPE, PLAYER_NAME, Total_eWPA, Adjusted_eWPA, IS_CAREER
+    private final Dataset<Row> scores;
+
+    public ClutchScores(Dataset<Row> scores) {
+        this.scores = scores;
+    }
+
+    public Dataset<Row> all() {
+        return scores;
+    }
+
+    // PLAYER_ID, PLAYER_NAME, SEASON_TYPE, Total_eWPA, Adjusted_eWPA
+    public Dataset<Row> seasonTypeScores() {
+        return scores.filter(col("IS_CAREER").equalTo(0))
+                .select("PLAYER_ID", "PLAYER_NAME", "SEASON_TYPE", "Total_eWPA", "Adjusted_eWPA");
+    }
+
+    // PLAYER_ID, PLAYER_NAME, Total_ClutchScore (all season types added together)
+    public Dataset<Row> careerScores() {
+        return scores.filter(col("IS_CAREER").equalTo(1).and(col("PLAYER_NAME").isNotNull()))
+                .select(col("PLAYER_ID"), col("PLAYER_NAME"), col("Adjusted_eWPA").alias("Total_ClutchScore"));
+    }
+}
@@ -0,0 +1,189 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.catalyst.expressions.objects.StaticInvoke;
+import org.apache.spark.sql.types.AbstractDataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.unsafe.Platform;
+import org.apache.spark.unsafe.types.UTF8String;
+import scala.collection.JavaConverters;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.apache.spark.sql.functions.lit;
+
+// The description tokens classifyEvent looks for, found in one pass over each description.
+// An Aho-Corasick automaton over all the tokens, flattened into a DFA table, so a scan is one table lookup per
+// character, no upper casing and no allocation. The result is a bitmask: the home description's tokens in the low
+// bits, the visitor description's shifted up by VISITOR, and HOME_PRESENT when there is a home description at all
+// (the made shot clutch check needs that). Everything classifyEvent and PlayEvent.eventCodes decide comes from the mask.
+// Case folding is ASCII only, same as toUpperCase for everything the play-by-play descriptions contain.
+public final class DescriptionTokens {
+
+    public static final int THREE_POINTER = 1;
+    public static final int DUNK = 1 << 1;
+    public static final int LAYUP = 1 << 2;
+    public static final int SHOT = 1 << 3;
+    public static final int MISS = 1 << 4;
+    public static final int FREE_THROW = 1 << 5;
+    public static final int REBOUND = 1 << 6;
+    public static final int TURNOVER = 1 << 7;
+    public static final int ASSIST = 1 << 8;
+    public static final int STEAL = 1 << 9;
+    public static final int BLOCK = 1 << 10;
+
+    public static final int HOME_PRESENT = 1 << 15;
+    public static final int VISITOR = 16;
+
+    // In bit order
+    private static final String[] TOKENS = {
+            "3PT", "DUNK", "LAYUP", "SHOT", "MISS", "FREE THROW", "REBOUND", "TURNOVER", "AST", "STEAL", "BLOCK"
+    };
+
+    // Character classes: 0 for anything no token contains, lower case letters share their upper case class
+    private static final int[] CLASSES = new int[128];
+    private static final int CLASS_COUNT;
+    // next state = TRANSITIONS[state * CLASS_COUNT + class], OUTPUT[state] = tokens ending at that state
+    private static final int[] TRANSITIONS;
+    private static final int[] OUTPUT;
+
+    static {
+        int classCount = 1;
+        for (String token : TOKENS) {
+            for (char c : token.toCharArray()) {
+                if (CLASSES[c] == 0) {
+                    CLASSES[c] = classCount++;
+                    if (c >= 'A' && c <= 'Z') {
+                        CLASSES[Character.toLowerCase(c)] = CLASSES[c];
+                    }
+                }
+            }
+        }
+        CLASS_COUNT = classCount;
+
+        // Trie first, -1 where there is no edge yet
+        int maxStates = 1;
+        for (String token : TOKENS) {
+            maxStates += token.length();
+        }
+        int[] transitions = new int[maxStates * CLASS_COUNT];
+        int[] output = new int[maxStates];
+        Arrays.fill(transitions, -1);
+        int states = 1;
+        for (int bit = 0; bit < TOKENS.length; bit++) {
+            int state = 0;
+            for (char c : TOKENS[bit].toCharArray()) {
+                int edge = state * CLASS_COUNT + CLASSES[c];
+                if (transitions[edge] < 0) {
+                    transitions[edge] = states++;
+                }
+                state = transitions[edge];
+            }
+            output[state] |= 1 << bit;
+        }
+
+        // Breadth first over the trie filling the missing edges from the failure links, so scanning never backtracks
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] |= output[fail[state]];
+            for (int c = 0; c < CLASS_COUNT; c++) {
+                int edge = state * CLASS_COUNT + c;
+                int next = transitions[edge];
+                if (next < 0) {
+                    transitions[edge] = transitions[fail[state] * CLASS_COUNT + c];
+                } else {
+                    fail[next] = transitions[fail[state] * CLASS_COUNT + c];
+                    queue.add(next);
+                }
+            }
+        }
+        TRANSITIONS = Arrays.copyOf(transitions, states * CLASS_COUNT);
+        OUTPUT = Arrays.copyOf(output, states);
+    }
+
+    private DescriptionTokens() {
+    }
+
+    // Tokens in one description, 0 for null
+    public static int scan(String description) {
+        if (description == null) {
+            return 0;
+        }
+        int state = 0;
+        int found = 0;
+        for (int i = 0, n = description.length(); i < n; i++) {
+            char c = description.charAt(i);
+            state = TRANSITIONS[state * CLASS_COUNT + (c < 128 ? CLASSES[c] : 0)];
+            found |= OUTPUT[state];
+        }
+        return found;
+    }
+
+    // Same on Spark's UTF-8 bytes, multi byte characters only have bytes >= 0x80 so they never match a token
+    public static int scan(UTF8String description) {
+        if (description == null) {
+            return 0;
+        }
+        Object base = description.getBaseObject();
+        long offset = description.getBaseOffset();
+        int state = 0;
+        int found = 0;
+        for (int i = 0, n = description.numBytes(); i < n; i++) {
+            int b = Platform.getByte(base, offset + i);
+            state = TRANSITIONS[state * CLASS_COUNT + (b >= 0 ? CLASSES[b] : 0)];
+            found |= OUTPUT[state];
+        }
+        return found;
+    }
+
+    // The mask for an event
+    public static int of(String homeDescription, String visitorDescription) {
+        return (homeDescription == null ? 0 : HOME_PRESENT | scan(homeDescription)) | scan(visitorDescription) << VISITOR;
+    }
+
+    // Called from generated code by column(...)
+    public static int ofUtf8(UTF8String homeDescription, UTF8String visitorDescription) {
+        return (homeDescription == null ? 0 : HOME_PRESENT | scan(homeDescription)) | scan(visitorDescription) << VISITOR;
+    }
+
+    // True when either description has the token
+    public static boolean either(int tokens, int token) {
+        return (tokens & (token | token << VISITOR)) != 0;
+    }
+
+    // A dunk, layup or shot without 3PT in the same description
+    public static boolean twoPointer(int tokens) {
+        return sideTwoPointer(tokens) || sideTwoPointer(tokens >>> VISITOR);
+    }
+
+    private static boolean sideTwoPointer(int side) {
+        return (side & THREE_POINTER) == 0 && (side & (DUNK | LAYUP | SHOT)) != 0;
+    }
+
+    // The mask as an int column. A StaticInvoke calls ofUtf8 straight from the generated code on the UTF8Strings,
+    // so unlike a UDF nothing gets converted to a java String first
+    public static Column column(Column homeDescription, Column visitorDescription) {
+        return new Column(new StaticInvoke(DescriptionTokens.class, DataTypes.IntegerType, "ofUtf8",
+                JavaConverters.asScalaBuffer(Arrays.asList(homeDescription.expr(), visitorDescription.expr())).toSeq(),
+                JavaConverters.asScalaBuffer(Arrays.<AbstractDataType>asList(DataTypes.StringType, DataTypes.StringType)).toSeq(),
+                false, false));
+    }
+
+    // For filtering on a stored mask, e.g. has(col("DESCRIPTION_TOKENS"), STEAL | BLOCK) for either token on either side
+    public static Column has(Column tokens, int token) {
+        return tokens.bitwiseAND(lit(token | token << VISITOR)).notEqual(0);
+    }
+}
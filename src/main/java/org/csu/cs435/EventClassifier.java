@@ -0,0 +1,53 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.catalyst.expressions.UnsafeArrayData;
+import org.apache.spark.sql.catalyst.expressions.objects.StaticInvoke;
+import org.apache.spark.sql.catalyst.util.ArrayData;
+import org.apache.spark.sql.types.AbstractDataType;
+import org.apache.spark.sql.types.DataTypes;
+import scala.collection.JavaConverters;
+
+import java.util.Arrays;
+
+import static org.apache.spark.sql.functions.*;
+
+// Native Spark expression version of NBABigData.classifyEvent.
+// decode already turned each row into its PlayEvent EVENT_CODES mask, so all that is left once the margin is filled
+// is PlayEvent.clutchCodes and listing the bits. A StaticInvoke calls that from the generated code on the plain ints,
+// instead of a UDF9 that boxes every argument and builds a List<String> per row.
+// The result is an array<int> of EventCode values in the same order classifyEvent adds its labels.
+public final class EventClassifier {
+
+    private EventClassifier() {
+    }
+
+    public static Column classify(Column eventCodes, Column secondsRemaining, Column scoreMargin) {
+        return new Column(new StaticInvoke(EventClassifier.class, DataTypes.createArrayType(DataTypes.IntegerType, false),
+                "codes", JavaConverters.asScalaBuffer(Arrays.asList(eventCodes.expr(),
+                        secondsRemaining.cast(DataTypes.IntegerType).expr(), scoreMargin.expr())).toSeq(),
+                JavaConverters.asScalaBuffer(Arrays.<AbstractDataType>asList(
+                        DataTypes.IntegerType, DataTypes.IntegerType, DataTypes.IntegerType)).toSeq(),
+                true, true));
+    }
+
+    // Called from generated code by classify. The codes come out in ascending order, which is classifyEvent's order
+    public static ArrayData codes(int eventCodes, int secondsRemaining, int scoreMargin) {
+        int codes = PlayEvent.clutchCodes(eventCodes, secondsRemaining, scoreMargin);
+        int[] values = new int[Integer.bitCount(codes)];
+        for (int i = 0; codes != 0; codes &= codes - 1) {
+            values[i++] = Integer.numberOfTrailingZeros(codes);
+        }
+        return UnsafeArrayData.fromPrimitiveArray(values);
+    }
+
+    // Maps an EventCode column back to the label classifyEvent would have produced
+    public static Column label(Column eventCode) {
+        String[] labels = EventCode.labels();
+        Column[] literals = new Column[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            literals[i] = lit(labels[i]);
+        }
+        return element_at(array(literals), eventCode.plus(1));
+    }
+}
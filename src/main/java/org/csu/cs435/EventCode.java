@@ -0,0 +1,133 @@
+package org.csu.cs435;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Compact integer codes for the event labels produced by NBABigData.classifyEvent.
+// The label strings are kept exactly as classifyEvent emits them so the eWPA lookup behaves the same.
+public final class EventCode {
+
+    public static final int OTHER = 0;
+    public static final int ASSIST = 1;
+    public static final int ASSIST_LAST_10 = 2;
+    public static final int STEAL = 3;
+    public static final int STEAL_LAST_10 = 4;
+    public static final int BLOCK = 5;
+    public static final int BLOCK_LAST_10 = 6;
+    public static final int TURNOVER = 7;
+    public static final int TURNOVER_LAST_10 = 8;
+    public static final int REBOUND = 9;
+    public static final int REBOUND_LAST_10 = 10;
+    public static final int MADE_3PT = 11;
+    public static final int MADE_3PT_LAST_10 = 12;
+    public static final int MADE_3PT_CLUTCH = 13;
+    public static final int MISSED_3PT = 14;
+    public static final int MISSED_3PT_CLUTCH = 15;
+    public static final int MADE_2PT = 16;
+    public static final int MADE_2PT_LAST_10 = 17;
+    public static final int MADE_2PT_CLUTCH = 18;
+    public static final int MISSED_2PT = 19;
+    public static final int MISSED_2PT_CLUTCH = 20;
+    public static final int MADE_FT = 21;
+    public static final int MADE_FT_LAST_10 = 22;
+    public static final int MISSED_FT = 23;
+    public static final int MISSED_FT_LAST_10 = 24;
+
+    // Indexed by code
+    private static final String[] LABELS = {
+            "Other",
+            "Assist",
+            "Assist (Last 10 Seconds)",
+            "STEAL",
+            "STEAL (Last 10 Seconds)",
+            "BLOCK",
+            "BLOCK (Last 10 Seconds)",
+            "Turnover",
+            "Turnover (Last 10 Seconds)",
+            "Rebound",
+            "Rebound (Last 10 Seconds)",
+            "Made 3-Point Shot",
+            "Made 3-Point Shot (Last 10 Seconds)",
+            "Made 3-Point Shot (Clutch Margin)",
+            "Missed 3-Point Shot",
+            "Missed 3-Point Shot (Clutch Margin)",
+            "Made 2-Point Shot",
+            "Made 2-Point Shot (Last 10 Seconds)",
+            "Made 2-Point Shot (Clutch Margin)",
+            "Missed 2-Point Shot",
+            "Missed 2-Point Shot (Clutch Margin)",
+            "Made Free Throw",
+            "Made Free Throw (Last 10 Seconds)",
+            "Missed Free Throw",
+            "Missed Free Throw (Last 10 Seconds)"
+    };
+
+    public static final int COUNT = LABELS.length;
+
+    // The two halves of a label, e.g. "Made 3-Point Shot" and CLUTCH_MARGIN for "Made 3-Point Shot (Clutch Margin)"
+    public static final String NORMAL = "Normal";
+    public static final String LAST_10_SECONDS = "Last 10 Seconds";
+    public static final String CLUTCH_MARGIN = "Clutch Margin";
+
+    private static final Map<String, Integer> CODES = new HashMap<>();
+    private static final String[] EVENT_TYPES = new String[COUNT];
+    private static final String[] TIMINGS = new String[COUNT];
+
+    static {
+        for (int i = 0; i < LABELS.length; i++) {
+            CODES.put(LABELS[i], i);
+            EVENT_TYPES[i] = LABELS[i];
+            TIMINGS[i] = NORMAL;
+            for (String timing : new String[]{LAST_10_SECONDS, CLUTCH_MARGIN}) {
+                if (LABELS[i].endsWith(" (" + timing + ")")) {
+                    EVENT_TYPES[i] = LABELS[i].substring(0, LABELS[i].length() - timing.length() - 3);
+                    TIMINGS[i] = timing;
+                }
+            }
+        }
+    }
+
+    private EventCode() {
+    }
+
+    public static String label(int code) {
+        return LABELS[code];
+    }
+
+    public static String[] labels() {
+        return LABELS.clone();
+    }
+
+    // Label without the timing part
+    public static String eventType(int code) {
+        return EVENT_TYPES[code];
+    }
+
+    // NORMAL, LAST_10_SECONDS or CLUTCH_MARGIN
+    public static String timing(int code) {
+        return TIMINGS[code];
+    }
+
+    // Which player slot gets the eWPA for an event: 1 = shooter/rebounder/ball handler, 2 = assist/steal, 3 = block, 0 = nobody
+    public static int creditedPlayer(int code) {
+        switch (code) {
+            case ASSIST:
+            case ASSIST_LAST_10:
+            case STEAL:
+            case STEAL_LAST_10:
+                return 2;
+            case BLOCK:
+            case BLOCK_LAST_10:
+                return 3;
+            case OTHER:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    // Returns OTHER for anything classifyEvent would not produce
+    public static int fromLabel(String label) {
+        return CODES.getOrDefault(label, OTHER);
+    }
+}
@@ -0,0 +1,106 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.SparkSession;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import static org.apache.spark.sql.functions.*;
+
+// eWPA weight and credited player slot for every EventCode, as primitive arrays indexed by code.
+// In Spark plans both tables go in as literal arrays, so looking up a weight is an array index
+// instead of a UDF doing a HashMap<String, Double> lookup on the label.
+public final class EwpaWeights implements Serializable {
+
+    private final double[] weights;
+    private final int[] creditedPlayers;
+
+    private EwpaWeights(double[] weights) {
+        this.weights = weights;
+        this.creditedPlayers = new int[EventCode.COUNT];
+        for (int code = 0; code < EventCode.COUNT; code++) {
+            creditedPlayers[code] = EventCode.creditedPlayer(code);
+        }
+    }
+
+    // Built in weights from NBABigData.eWPAValues, looked up by the exact label classifyEvent emits
+    public static EwpaWeights defaults() {
+        double[] weights = new double[EventCode.COUNT];
+        for (int code = 0; code < EventCode.COUNT; code++) {
+            weights[code] = NBABigData.getEwpaValue(EventCode.label(code));
+        }
+        return new EwpaWeights(weights);
+    }
+
+    // Weights file is "event type,weight" per line, e.g. "Made 3-Point Shot (Last 10 Seconds),0.069".
+    // Lines starting with # and an "event_type,weight" header are skipped. Event types that aren't
+    // listed keep their built in weight, event types classifyEvent never produces are an error.
+    public static EwpaWeights load(SparkSession spark, String path) throws IOException {
+        return load(spark.sparkContext().hadoopConfiguration(), path);
+    }
+
+    public static EwpaWeights load(Configuration conf, String path) throws IOException {
+        double[] weights = defaults().weights.clone();
+        Path file = new Path(path);
+        FileSystem fs = file.getFileSystem(conf);
+        try (FSDataInputStream in = fs.open(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.equalsIgnoreCase("event_type,weight")) {
+                    continue;
+                }
+                int comma = line.lastIndexOf(',');
+                if (comma < 0) {
+                    throw new IllegalArgumentException("Bad line in weights file " + path + ": " + line);
+                }
+                String label = line.substring(0, comma).trim();
+                int code = EventCode.fromLabel(label);
+                if (code == EventCode.OTHER && !label.equals(EventCode.label(EventCode.OTHER))) {
+                    throw new IllegalArgumentException("Unknown event type in weights file " + path + ": " + label);
+                }
+                weights[code] = Double.parseDouble(line.substring(comma + 1).trim());
+            }
+        }
+        return new EwpaWeights(weights);
+    }
+
+    public double[] toArray() {
+        return weights.clone();
+    }
+
+    public double weight(int code) {
+        return weights[code];
+    }
+
+    public int creditedPlayer(int code) {
+        return creditedPlayers[code];
+    }
+
+    // eWPA for an EventCode column
+    public Column weight(Column eventCode) {
+        Column[] literals = new Column[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            literals[i] = lit(weights[i]);
+        }
+        return element_at(array(literals), eventCode.plus(1));
+    }
+
+    // Credited player slot (1-3, 0 for nobody) for an EventCode column
+    public Column creditedPlayer(Column eventCode) {
+        Column[] literals = new Column[creditedPlayers.length];
+        for (int i = 0; i < creditedPlayers.length; i++) {
+            literals[i] = lit(creditedPlayers[i]);
+        }
+        return element_at(array(literals), eventCode.plus(1));
+    }
+}
@@ -0,0 +1,171 @@
+package org.csu.cs435;
+
+import org.apache.spark.api.java.function.MapPartitionsFunction;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+
+import java.util.*;
+
+import static org.apache.spark.sql.functions.col;
+
+// Single pass alternative to the SCOREMARGIN window in preprocessData plus the explodes in calculateClutchness.
+// Rows are shuffled by GAME_ID once and sorted by EVENTNUM inside each partition, then each game is walked
+// in order: forward fill the margin, apply the clutch filters, classify, and emit the per player eWPA rows.
+// The output has the same columns as the playerData the window path builds.
+public class GameProcessor implements MapPartitionsFunction<Row, Row> {
+
+    private final int gameId;
+    private final int eventNum;
+    private final int period;
+    private final int eventCodes;
+    private final int descriptionTokens;
+    // -1 unless decodeRows kept the description strings
+    private final int homeDescription;
+    private final int visitorDescription;
+    private final int secondsRemaining;
+    private final int scoreMargin;
+    private final int seasonType;
+    private final int[] playerIds = new int[3];
+    private final int[] playerNames = new int[3];
+
+    private final EwpaWeights weights;
+
+    GameProcessor(StructType schema, EwpaWeights weights) {
+        this.weights = weights;
+        gameId = schema.fieldIndex("GAME_ID");
+        eventNum = schema.fieldIndex("EVENTNUM");
+        period = schema.fieldIndex("PERIOD");
+        eventCodes = schema.fieldIndex("EVENT_CODES");
+        descriptionTokens = schema.fieldIndex("DESCRIPTION_TOKENS");
+        boolean descriptions = Arrays.asList(schema.fieldNames()).contains("HOMEDESCRIPTION");
+        homeDescription = descriptions ? schema.fieldIndex("HOMEDESCRIPTION") : -1;
+        visitorDescription = descriptions ? schema.fieldIndex("VISITORDESCRIPTION") : -1;
+        secondsRemaining = schema.fieldIndex("SECONDS_REMAINING");
+        scoreMargin = schema.fieldIndex("SCOREMARGIN");
+        seasonType = schema.fieldIndex("SEASON_TYPE");
+        for (int i = 0; i < 3; i++) {
+            playerIds[i] = schema.fieldIndex("PLAYER" + (i + 1) + "_ID");
+            playerNames[i] = schema.fieldIndex("PLAYER" + (i + 1) + "_NAME");
+        }
+    }
+
+    // decoded is the output of NBABigData.decodeRows (PlayEvent columns)
+    public static Dataset<Row> playerEvents(Dataset<Row> decoded, EwpaWeights weights) {
+        StructType schema = decoded.schema();
+        return decoded
+                .repartition(col("GAME_ID"))
+                .sortWithinPartitions("GAME_ID", "EVENTNUM")
+                .mapPartitions(new GameProcessor(schema, weights), RowEncoder.apply(playerEventSchema(schema)));
+    }
+
+    // Same columns as the playerData built by NBABigData.explodePlayerEvents
+    static StructType playerEventSchema(StructType schema) {
+        StructType playerEvents = new StructType()
+                .add("SEASON_TYPE", DataTypes.StringType)
+                .add("PLAYER_ID", schema.apply("PLAYER1_ID").dataType())
+                .add("PLAYER_NAME", DataTypes.StringType)
+                .add("PLAYER_SLOT", DataTypes.IntegerType)
+                .add("eWPA", DataTypes.DoubleType)
+                .add("EVENT_TYPE", DataTypes.StringType)
+                .add("EVENT_CODE", DataTypes.IntegerType)
+                .add("DESCRIPTION_TOKENS", DataTypes.IntegerType)
+                .add("SECONDS_REMAINING", schema.apply("SECONDS_REMAINING").dataType())
+                .add("SCOREMARGIN", DataTypes.IntegerType)
+                .add("GAME_ID", schema.apply("GAME_ID").dataType())
+                .add("PERIOD", schema.apply("PERIOD").dataType())
+                .add("EVENTNUM", schema.apply("EVENTNUM").dataType());
+        if (Arrays.asList(schema.fieldNames()).contains("HOMEDESCRIPTION")) {
+            playerEvents = playerEvents
+                    .add("HOMEDESCRIPTION", DataTypes.StringType)
+                    .add("VISITORDESCRIPTION", DataTypes.StringType);
+        }
+        return playerEvents;
+    }
+
+    @Override
+    public Iterator<Row> call(Iterator<Row> rows) {
+        return new GameIterator(rows);
+    }
+
+    // Fills the margin from state, applies the clutch filters and adds the per player rows for one event
+    void process(Row row, GameState state, Collection<Row> out) {
+        Integer seconds = intOrNull(row, secondsRemaining);
+        state.advance((Integer) row.get(eventNum), (Integer) row.get(scoreMargin), seconds);
+
+        // Filter events where the score margin is within 6 points
+        Integer margin = state.getScoreMargin();
+        if (margin == null || Math.abs(margin) > 6) {
+            return;
+        }
+
+        // we only want the last 5 minutes
+        if (seconds == null || seconds < 0 || seconds > 300) {
+            return;
+        }
+
+        // Ascending code order is the order classifyEvent adds its labels in
+        for (int codes = PlayEvent.clutchCodes(row.getInt(eventCodes), seconds, margin); codes != 0; codes &= codes - 1) {
+            int code = Integer.numberOfTrailingZeros(codes);
+            double eWPA = weights.weight(code);
+            int credited = weights.creditedPlayer(code);
+            for (int slot = 0; slot < 3; slot++) {
+                Object[] values = {
+                        row.get(seasonType),
+                        row.get(playerIds[slot]),
+                        row.get(playerNames[slot]),
+                        slot + 1,
+                        credited == slot + 1 ? eWPA : 0.0,
+                        EventCode.label(code), code, row.get(descriptionTokens), row.get(secondsRemaining), margin,
+                        row.get(gameId), row.get(period), row.get(eventNum)};
+                if (homeDescription >= 0) {
+                    values = Arrays.copyOf(values, values.length + 2);
+                    values[values.length - 2] = row.get(homeDescription);
+                    values[values.length - 1] = row.get(visitorDescription);
+                }
+                out.add(RowFactory.create(values));
+            }
+        }
+    }
+
+    // The short SECONDS_REMAINING column as the Integer GameState takes
+    private static Integer intOrNull(Row row, int i) {
+        return row.isNullAt(i) ? null : ((Number) row.get(i)).intValue();
+    }
+
+    // Walks a partition sorted by GAME_ID, EVENTNUM, starting a fresh GameState whenever the game changes
+    private final class GameIterator implements Iterator<Row> {
+        private final Iterator<Row> rows;
+        private final Deque<Row> pending = new ArrayDeque<>();
+        private GameState state;
+        private Object currentGameId;
+
+        GameIterator(Iterator<Row> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending.isEmpty() && rows.hasNext()) {
+                Row row = rows.next();
+                if (state == null || !Objects.equals(currentGameId, row.get(gameId))) {
+                    state = new GameState();
+                    currentGameId = row.get(gameId);
+                }
+                process(row, state, pending);
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.poll();
+        }
+    }
+}
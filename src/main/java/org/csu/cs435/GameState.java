@@ -0,0 +1,50 @@
+package org.csu.cs435;
+
+import java.io.Serializable;
+
+// Everything carried from one event to the next within a game. The single-pass processor keeps one
+// per game while it walks a partition, the streaming mode keeps it in the state store between batches.
+// New game state features (lead changes, possession, ...) go here and get updated in advance().
+// Bean style so it can go through Encoders.bean.
+public class GameState implements Serializable {
+
+    private Integer scoreMargin;
+    private Integer eventNum;
+    private Integer secondsRemaining;
+
+    public void advance(Integer rowEventNum, Integer rowScoreMargin, Integer rowSecondsRemaining) {
+        eventNum = rowEventNum;
+        secondsRemaining = rowSecondsRemaining;
+        // Same as last(SCOREMARGIN, ignoreNulls = true) over the running window
+        if (rowScoreMargin != null) {
+            scoreMargin = rowScoreMargin;
+        }
+    }
+
+    // Last known margin (forward filled)
+    public Integer getScoreMargin() {
+        return scoreMargin;
+    }
+
+    public void setScoreMargin(Integer scoreMargin) {
+        this.scoreMargin = scoreMargin;
+    }
+
+    // EVENTNUM of the last event seen
+    public Integer getEventNum() {
+        return eventNum;
+    }
+
+    public void setEventNum(Integer eventNum) {
+        this.eventNum = eventNum;
+    }
+
+    // Game clock at the last event seen
+    public Integer getSecondsRemaining() {
+        return secondsRemaining;
+    }
+
+    public void setSecondsRemaining(Integer secondsRemaining) {
+        this.secondsRemaining = secondsRemaining;
+    }
+}
@@ -0,0 +1,115 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.apache.spark.sql.functions.col;
+
+// Converts the play-by-play CSVs into Parquet once and reads that on later runs.
+// Layout is <cache>/SOURCE=<csv file>/SEASON=<year>/PERIOD=<n>/part-*.parquet so a filter on PERIOD
+// skips whole directories and a changed CSV only rewrites its own SOURCE directory.
+public final class IngestCache {
+
+    // Spark skips files starting with _ during partition discovery so the manifest can live in the cache root
+    private static final String MANIFEST = "_ingest_manifest";
+
+    private IngestCache() {
+    }
+
+    // Brings the cache in line with the CSVs the plan lists (compressed or not), only converting files that are
+    // new or changed. Files the plan skips for --season aren't converted. A copy of one cached by an earlier run
+    // stays as long as its CSV is unchanged, and gets converted again by the next run that reads it otherwise
+    public static void sync(SparkSession spark, IngestPlan plan, String cachePath) throws IOException {
+        Configuration conf = spark.sparkContext().hadoopConfiguration();
+        Path cacheRoot = new Path(cachePath);
+        FileSystem cacheFs = cacheRoot.getFileSystem(conf);
+
+        Map<String, String> previous = readManifest(cacheFs, new Path(cacheRoot, MANIFEST));
+        Map<String, String> current = new TreeMap<>();
+
+        for (IngestPlan.InputFile file : plan.files()) {
+            String source = file.path.getName();
+            String signature = file.bytes + ":" + file.modificationTime;
+            boolean cached = signature.equals(previous.get(source));
+            if (!plan.keep(file)) {
+                if (cached) {
+                    current.put(source, signature);
+                }
+                continue;
+            }
+            current.put(source, signature);
+            if (cached) {
+                continue;
+            }
+            System.out.println("Ingesting " + file.path + " into " + cachePath);
+            spark.read()
+                    .option("header", "true")
+                    .option("enforceSchema", "false")
+                    .schema(PlayByPlaySchema.SCHEMA)
+                    .csv(file.path.toString())
+                    .withColumn("SEASON", PlayByPlaySchema.season(col("GAME_ID")))
+                    .write()
+                    .mode(SaveMode.Overwrite)
+                    .partitionBy("SEASON", "PERIOD")
+                    .parquet(new Path(cacheRoot, "SOURCE=" + source).toString());
+        }
+
+        // Drop anything whose CSV is gone, or changed while the plan skipped it
+        for (String source : previous.keySet()) {
+            if (!current.containsKey(source)) {
+                cacheFs.delete(new Path(cacheRoot, "SOURCE=" + source), true);
+            }
+        }
+
+        writeManifest(cacheFs, new Path(cacheRoot, MANIFEST), current);
+    }
+
+    // Reads the cache back with just the columns the pipeline uses, so Parquet can skip the rest
+    public static Dataset<Row> read(SparkSession spark, String cachePath) {
+        return spark.read()
+                .parquet(cachePath)
+                .selectExpr(PlayByPlaySchema.PIPELINE_COLUMNS);
+    }
+
+    private static Map<String, String> readManifest(FileSystem fs, Path manifest) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        if (!fs.exists(manifest)) {
+            return entries;
+        }
+        try (FSDataInputStream in = fs.open(manifest);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length == 2) {
+                    entries.put(parts[0], parts[1]);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void writeManifest(FileSystem fs, Path manifest, Map<String, String> entries) throws IOException {
+        try (FSDataOutputStream out = fs.create(manifest, true);
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.println(entry.getKey() + "\t" + entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+
+// Decides what the read step reads and how finely, before Spark sees any of it.
+// Lists the play-by-play files (.csv, or .csv.bz2/.gz/.zst/... for any codec Hadoop knows, zstd through ZstdCodec)
+// with their size on disk and the seasons in their first MB (decompressed), drops files outside --season, and sizes the read
+// splits and the GAME_ID shuffle from how much CSV that is, so no task ends up with a lot more than --task-mb.
+// Plain and bzip2 files split at any size. gzip and zstd can't be split, so each of those is one read task no
+// matter what and the plan warns about the ones big enough to hold up the stage. Everything after the read
+// shuffles by GAME_ID, so from the window or GameProcessor on the tasks are balanced either way.
+//
+// Seasons come from the GAME_IDs in the sample, which is the whole file for small ones. Only a file sampled whole
+// is skipped for having none of the wanted seasons: a bigger one could have them after its first MB, so it is
+// always read and the row filter drops its other seasons. Rows from other seasons in the kept files are filtered
+// out by GAME_ID either way.
+public final class IngestPlan {
+
+    // Bytes on disk read from the start of each file for its seasons and compression ratio
+    private static final int SAMPLE_BYTES = 1 << 20;
+
+    private final List<InputFile> files;
+    private final int[] seasons;
+
+    private IngestPlan(List<InputFile> files, int[] seasons) {
+        this.files = files;
+        this.seasons = seasons;
+    }
+
+    // seasons is {first, last} like JobOptions.getRange, or null for all of them
+    public static IngestPlan create(SparkSession spark, String inputPath, int[] seasons) throws IOException {
+        Configuration conf = spark.sparkContext().hadoopConfiguration();
+        ZstdCodec.register(conf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+
+        List<InputFile> files = new ArrayList<>();
+        for (FileStatus status : listFiles(new Path(inputPath), conf)) {
+            files.add(sample(status, codecs.getCodec(status.getPath()), conf));
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No play-by-play files in " + inputPath);
+        }
+        return new IngestPlan(files, seasons);
+    }
+
+    // Play-by-play files under input (or input itself), compressed ones included, sorted by name
+    static List<FileStatus> listFiles(Path input, Configuration conf) throws IOException {
+        ZstdCodec.register(conf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        FileSystem fs = input.getFileSystem(conf);
+        List<FileStatus> files = new ArrayList<>();
+        for (FileStatus status : fs.listStatus(input)) {
+            if (status.isFile() && isCsv(status.getPath(), codecs)) {
+                files.add(status);
+            }
+        }
+        files.sort(Comparator.comparing(status -> status.getPath().getName()));
+        return files;
+    }
+
+    // Sets the read split size and the shuffle partition count so each task gets about taskMb of CSV
+    public void configure(SparkSession spark, int taskMb) {
+        long taskBytes = (long) taskMb << 20;
+        int parallelism = spark.sparkContext().defaultParallelism();
+
+        // Spark splits files by bytes on disk, a bzip2 split holds ratio times that much CSV. There is one split
+        // size for the whole read, so it uses the ratio over all the splittable bytes: the plain CSVs (ratio 1)
+        // and the bzip2 files each weigh in by their size instead of the most compressed file sizing everything
+        long csvBytes = 0;
+        long splittableBytes = 0;
+        long splittableCsvBytes = 0;
+        for (InputFile file : kept()) {
+            csvBytes += file.csvBytes();
+            if (file.splittable) {
+                splittableBytes += file.bytes;
+                splittableCsvBytes += file.csvBytes();
+            }
+        }
+        double ratio = splittableBytes == 0 ? 1 : Math.max(1, (double) splittableCsvBytes / splittableBytes);
+        long splitBytes = Math.max(1 << 20, (long) (taskBytes / ratio));
+        spark.conf().set("spark.sql.files.maxPartitionBytes", splitBytes);
+
+        // A whole number of waves, never fewer tasks than cores
+        long tasks = Math.max(1, (csvBytes + taskBytes - 1) / taskBytes);
+        long partitions = (tasks + parallelism - 1) / parallelism * parallelism;
+        spark.conf().set("spark.sql.shuffle.partitions", partitions);
+        System.out.println("Ingest: " + mb(csvBytes) + " MB of CSV, " + mb(splitBytes)
+                + " MB read splits, " + partitions + " shuffle partitions");
+
+        for (InputFile file : kept()) {
+            if (!file.splittable && file.csvBytes() > 2 * taskBytes) {
+                System.out.println("Ingest: " + file.path.getName() + " can't be split (" + file.codecName()
+                        + "), one task reads all " + mb(file.csvBytes()) + " MB of it."
+                        + " Recompress it as bzip2 or split it to spread the read out");
+            }
+        }
+    }
+
+    // The kept files with the fixed play-by-play schema, rows outside the season range dropped
+    public Dataset<Row> read(SparkSession spark) {
+        String[] paths = kept().stream().map(file -> file.path.toString()).toArray(String[]::new);
+        if (paths.length == 0) {
+            // Still a frame with the right columns, just empty
+            return spark.createDataFrame(Collections.emptyList(), PlayByPlaySchema.SCHEMA);
+        }
+        return spark.read()
+                .option("header", "true")
+                .option("enforceSchema", "false")
+                .schema(PlayByPlaySchema.SCHEMA)
+                .csv(paths)
+                .filter(seasonFilter(PlayByPlaySchema.season(col("GAME_ID"))));
+    }
+
+    // The season range as a condition on a season column, true when there is no range
+    public Column seasonFilter(Column season) {
+        return seasons == null ? lit(true) : season.between(seasons[0], seasons[1]);
+    }
+
+    public void print() {
+        List<Object[]> rows = new ArrayList<>();
+        for (InputFile file : files) {
+            rows.add(new Object[]{file.path.getName(), file.codecName(), mb(file.bytes), mb(file.csvBytes()),
+                    file.splittable, file.seasonRange(), keep(file) ? "read" : "skipped"});
+        }
+        TextTable.show(new String[]{"FILE", "CODEC", "MB", "CSV_MB", "SPLITTABLE", "SEASONS", "PLAN"},
+                rows, rows.size(), false);
+    }
+
+    // Every listed file, kept or not
+    List<InputFile> files() {
+        return files;
+    }
+
+    List<InputFile> kept() {
+        List<InputFile> kept = new ArrayList<>();
+        for (InputFile file : files) {
+            if (keep(file)) {
+                kept.add(file);
+            }
+        }
+        return kept;
+    }
+
+    boolean keep(InputFile file) {
+        // Nothing sampled (no data rows, or GAME_IDs that don't parse), or only the start of the file, let the row
+        // filter decide
+        return seasons == null || file.firstSeason < 0 || !file.sampledWhole
+                || (file.firstSeason <= seasons[1] && file.lastSeason >= seasons[0]);
+    }
+
+    private static String mb(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / (double) (1 << 20));
+    }
+
+    private static boolean isCsv(Path path, CompressionCodecFactory codecs) {
+        String name = path.getName();
+        if (name.startsWith("_") || name.startsWith(".")) {
+            return false;
+        }
+        CompressionCodec codec = codecs.getCodec(path);
+        if (codec != null) {
+            name = CompressionCodecFactory.removeSuffix(name, codec.getDefaultExtension());
+        }
+        return name.endsWith(".csv");
+    }
+
+    // Decompresses the start of the file for the seasons in it and the compression ratio
+    private static InputFile sample(FileStatus status, CompressionCodec codec, Configuration conf) throws IOException {
+        InputFile file = new InputFile(status.getPath(), status.getLen(), status.getModificationTime(), codec);
+        FileSystem fs = file.path.getFileSystem(conf);
+        byte[] head;
+        boolean whole;
+        try (FSDataInputStream in = fs.open(file.path)) {
+            head = in.readNBytes(SAMPLE_BYTES);
+            whole = in.read() < 0;
+        }
+        byte[] sample = head;
+        if (codec != null) {
+            sample = decompress(codec, head);
+            // Exact for a whole file, otherwise a little low since the last partial block of the head is lost
+            file.ratio = (double) sample.length / Math.max(1, head.length);
+        }
+        file.sampledWhole = whole;
+        readSeasons(file, sample, whole);
+        return file;
+    }
+
+    // As much as comes out of the compressed bytes, a head cut off mid stream just ends early
+    private static byte[] decompress(CompressionCodec codec, byte[] compressed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = codec.createInputStream(new ByteArrayInputStream(compressed))) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            // Truncated input, keep what we have
+        }
+        return out.toByteArray();
+    }
+
+    // Seasons of the GAME_IDs in the sampled lines, the last line is left out unless the sample is the whole file
+    private static void readSeasons(InputFile file, byte[] sample, boolean whole) throws IOException {
+        int end = sample.length;
+        if (!whole) {
+            while (end > 0 && sample[end - 1] != '\n') {
+                end--;
+            }
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(sample, 0, end), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            int gameIdColumn = Arrays.asList(header.split(",")).indexOf("GAME_ID");
+            if (gameIdColumn < 0) {
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String gameId = field(line, gameIdColumn);
+                if (gameId == null || !gameId.matches("\\d+")) {
+                    // Quoted newlines inside a description end up here, fine to skip
+                    continue;
+                }
+                int season = PlayByPlaySchema.season(Integer.parseInt(gameId));
+                file.firstSeason = file.firstSeason < 0 ? season : Math.min(file.firstSeason, season);
+                file.lastSeason = Math.max(file.lastSeason, season);
+            }
+        }
+    }
+
+    // The index-th CSV field of line, null if the line is shorter. Commas inside quotes don't count
+    private static String field(String line, int index) {
+        int start = 0;
+        int column = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || (line.charAt(i) == ',' && !quoted)) {
+                if (column == index) {
+                    return line.substring(start, i).replace("\"", "").trim();
+                }
+                column++;
+                start = i + 1;
+            } else if (line.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+        return null;
+    }
+
+    static final class InputFile {
+        final Path path;
+        final long bytes;
+        final long modificationTime;
+        final CompressionCodec codec;
+        final boolean splittable;
+        // CSV bytes per byte on disk
+        double ratio = 1;
+        int firstSeason = -1;
+        int lastSeason = -1;
+        // The seasons come from the whole file, not just its first SAMPLE_BYTES
+        boolean sampledWhole;
+
+        InputFile(Path path, long bytes, long modificationTime, CompressionCodec codec) {
+            this.path = path;
+            this.bytes = bytes;
+            this.modificationTime = modificationTime;
+            this.codec = codec;
+            this.splittable = codec == null || codec instanceof SplittableCompressionCodec;
+        }
+
+        long csvBytes() {
+            return (long) (bytes * ratio);
+        }
+
+        String codecName() {
+            return codec == null ? "none" : codec.getDefaultExtension().substring(1);
+        }
+
+        String seasonRange() {
+            if (firstSeason < 0) {
+                return "?";
+            }
+            String range = firstSeason == lastSeason ? String.valueOf(firstSeason) : firstSeason + "-" + lastSeason;
+            // Later seasons could follow past the sample
+            return sampledWhole ? range : range + "+";
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.csu.cs435;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Command line is: <input path> [--option=value ...]
+public final class JobOptions {
+
+    private final String inputPath;
+    private final Map<String, String> options = new HashMap<>();
+
+    private JobOptions(String inputPath) {
+        this.inputPath = inputPath;
+    }
+
+    public static JobOptions parse(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: NBABigData <input path> [--option=value ...]");
+        }
+        JobOptions jobOptions = new JobOptions(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options must look like --name=value, got: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                jobOptions.options.put(arg.substring(2), "true");
+            } else {
+                jobOptions.options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return jobOptions;
+    }
+
+    public String inputPath() {
+        return inputPath;
+    }
+
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    // "2019" or "2015-2019" as {first, last}, null when the option isn't given
+    public int[] getRange(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split("-");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("--" + name + " must be N or N-M, got: " + value);
+        }
+        int first = Integer.parseInt(parts[0].trim());
+        int last = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : first;
+        return new int[]{first, last};
+    }
+}
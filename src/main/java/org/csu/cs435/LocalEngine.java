@@ -0,0 +1,335 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Single machine engine that needs no SparkSession (--engine=local). CSVs are memory mapped and parsed
+// into column arrays, then games are split across a ForkJoinPool and each game is walked in EVENTNUM
+// order with the same GameState, PlayEvent event codes and eWPA weights as the Spark single-pass processor.
+// Prints the same reports as ClutchReport (and writes them under --report-dir if given).
+// Scores match the Spark engine up to the order floating point sums are added in.
+//   --threads=N             pool size (default: available processors)
+//   --keep-descriptions     keep the description strings for the player event dump
+public final class LocalEngine {
+
+    private static final String[] SEASON_TYPES = {"Regular Season", "Playoffs", "Finals", "Unknown"};
+
+    // Games per fork join leaf
+    private static final int GAMES_PER_TASK = 64;
+
+    private final EwpaWeights weights;
+    private final Set<String> reportedPlayers;
+    private final List<PlayByPlayColumns> files;
+    private final long[][] games;
+
+    private LocalEngine(EwpaWeights weights, Set<String> reportedPlayers, List<PlayByPlayColumns> files) {
+        this.weights = weights;
+        this.reportedPlayers = reportedPlayers;
+        this.files = files;
+        this.games = groupByGame(files);
+    }
+
+    public static void run(JobOptions options) throws IOException {
+        EwpaWeights weights = options.has("weights")
+                ? EwpaWeights.load(new Configuration(), options.get("weights", null))
+                : EwpaWeights.defaults();
+        Set<String> players = new HashSet<>(Arrays.asList(options.get("players", "John Stockton").split(",")));
+        ForkJoinPool pool = new ForkJoinPool(options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+
+        try {
+            // One task per file for parsing
+            List<ForkJoinTask<PlayByPlayColumns>> reads = new ArrayList<>();
+            for (Path file : listCsvFiles(Paths.get(options.inputPath()))) {
+                reads.add(pool.submit(() -> MappedCsvReader.read(file, options.has("keep-descriptions"))));
+            }
+            List<PlayByPlayColumns> files = new ArrayList<>();
+            for (ForkJoinTask<PlayByPlayColumns> read : reads) {
+                files.add(read.get());
+            }
+
+            LocalEngine engine = new LocalEngine(weights, players, files);
+            Totals totals = pool.invoke(engine.new GameTask(0, engine.games.length));
+            totals.report(options);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading play-by-play files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read play-by-play files", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Path> listCsvFiles(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return Collections.singletonList(input);
+        }
+        try (Stream<Path> paths = Files.list(input)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Row references (file << 32 | row) per game, each game sorted by EVENTNUM (nulls first, then file order)
+    private static long[][] groupByGame(List<PlayByPlayColumns> files) {
+        Map<Integer, long[]> refs = new LinkedHashMap<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int f = 0; f < files.size(); f++) {
+            PlayByPlayColumns columns = files.get(f);
+            for (int row = 0; row < columns.size; row++) {
+                int game = columns.gameId[row];
+                int count = counts.getOrDefault(game, 0);
+                long[] gameRefs = refs.get(game);
+                if (gameRefs == null || gameRefs.length == count) {
+                    gameRefs = gameRefs == null ? new long[128] : Arrays.copyOf(gameRefs, count * 2);
+                    refs.put(game, gameRefs);
+                }
+                gameRefs[count] = ((long) f << 32) | row;
+                counts.put(game, count + 1);
+            }
+        }
+
+        long[][] games = new long[refs.size()][];
+        int g = 0;
+        for (Map.Entry<Integer, long[]> entry : refs.entrySet()) {
+            int count = counts.get(entry.getKey());
+            long[] gameRefs = entry.getValue();
+            // Sort on (EVENTNUM, position) packed into one long, then swap the refs into that order
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                PlayByPlayColumns columns = files.get((int) (gameRefs[i] >>> 32));
+                keys[i] = ((long) columns.eventNum[(int) gameRefs[i]] << 32) | i;
+            }
+            Arrays.sort(keys);
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = gameRefs[(int) keys[i]];
+            }
+            games[g++] = sorted;
+        }
+        return games;
+    }
+
+    private final class GameTask extends RecursiveTask<Totals> {
+        private final int from;
+        private final int to;
+
+        GameTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                Totals totals = new Totals();
+                for (int g = from; g < to; g++) {
+                    processGame(games[g], totals);
+                }
+                return totals;
+            }
+            int middle = (from + to) >>> 1;
+            GameTask left = new GameTask(from, middle);
+            left.fork();
+            Totals right = new GameTask(middle, to).compute();
+            Totals totals = left.join();
+            totals.merge(right);
+            return totals;
+        }
+    }
+
+    private void processGame(long[] refs, Totals totals) {
+        GameState state = new GameState();
+        for (long ref : refs) {
+            PlayByPlayColumns columns = files.get((int) (ref >>> 32));
+            int row = (int) ref;
+            int seconds = columns.secondsRemaining[row];
+            state.advance(PlayByPlayColumns.boxed(columns.eventNum[row]), PlayByPlayColumns.boxed(columns.scoreMargin[row]),
+                    PlayByPlayColumns.boxed(seconds));
+
+            // Filter events where the score margin is within 6 points
+            Integer margin = state.getScoreMargin();
+            if (margin == null || Math.abs(margin) > 6) {
+                continue;
+            }
+
+            // we only want the last 5 minutes
+            if (seconds == PlayByPlayColumns.NULL || seconds < 0 || seconds > 300) {
+                continue;
+            }
+
+            int seasonType = seasonType(columns.weekOfSeason[row]);
+
+            // Ascending code order is the order classifyEvent adds its labels in
+            for (int codes = PlayEvent.clutchCodes(columns.eventCodes[row], seconds, margin); codes != 0; codes &= codes - 1) {
+                int code = Integer.numberOfTrailingZeros(codes);
+                int credited = weights.creditedPlayer(code);
+                for (int slot = 0; slot < 3; slot++) {
+                    int playerId = columns.playerIds[slot][row];
+                    String playerName = columns.playerNames[slot][row];
+                    double eWPA = credited == slot + 1 ? weights.weight(code) : 0.0;
+                    totals.add(playerId, playerName, seasonType, eWPA);
+
+                    if (playerName != null && reportedPlayers.contains(playerName)) {
+                        Object[] event = {
+                                SEASON_TYPES[seasonType], PlayByPlayColumns.boxed(playerId), playerName, slot + 1, eWPA,
+                                EventCode.label(code), code, columns.descriptionTokens[row], seconds, margin,
+                                PlayByPlayColumns.boxed(columns.gameId[row]), PlayByPlayColumns.boxed(columns.period[row]),
+                                PlayByPlayColumns.boxed(columns.eventNum[row])};
+                        if (columns.homeDescription != null) {
+                            // Empty instead of null, same as decode
+                            event = Arrays.copyOf(event, event.length + 2);
+                            event[event.length - 2] = columns.homeDescription[row] == null ? "" : columns.homeDescription[row];
+                            event[event.length - 1] = columns.visitorDescription[row] == null ? "" : columns.visitorDescription[row];
+                        }
+                        totals.playerEvents.add(event);
+                    }
+                }
+            }
+        }
+    }
+
+    // Same buckets as NBABigData.applySeasonType
+    private static int seasonType(int weekOfSeason) {
+        if (weekOfSeason == PlayByPlayColumns.NULL) {
+            return 3;
+        }
+        if (weekOfSeason >= 1 && weekOfSeason <= 24) {
+            return 0;
+        }
+        if (weekOfSeason >= 25 && weekOfSeason <= 30) {
+            return 1;
+        }
+        if (weekOfSeason >= 31 && weekOfSeason <= 33) {
+            return 2;
+        }
+        return 3;
+    }
+
+    // Per player sums for one range of games, merged up the fork join tree
+    private static final class Totals {
+        // key is PLAYER_ID * 4 + season type
+        private final Map<Long, double[]> seasonTypeSums = new HashMap<>();
+        private final Map<Integer, double[]> careerSums = new HashMap<>();
+        // Same as the max(PLAYER_NAME) per PLAYER_ID in the Spark rollup, over the events that score
+        private final Map<Integer, String> names = new HashMap<>();
+        private final List<Object[]> playerEvents = new ArrayList<>();
+
+        void add(int playerId, String playerName, int seasonType, double eWPA) {
+            if (playerId == PlayByPlayColumns.NULL) {
+                return;
+            }
+            // Filter out zero eWPA
+            if (eWPA != 0.0) {
+                if (playerName != null) {
+                    names.merge(playerId, playerName, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+                }
+                seasonTypeSums.computeIfAbsent((long) playerId * 4 + seasonType, key -> new double[1])[0] += eWPA;
+                careerSums.computeIfAbsent(playerId, key -> new double[1])[0] += eWPA;
+            }
+        }
+
+        void merge(Totals other) {
+            other.seasonTypeSums.forEach((key, sum) -> seasonTypeSums.computeIfAbsent(key, k -> new double[1])[0] += sum[0]);
+            other.careerSums.forEach((key, sum) -> careerSums.computeIfAbsent(key, k -> new double[1])[0] += sum[0]);
+            other.names.forEach((key, name) -> names.merge(key, name, (a, b) -> a.compareTo(b) >= 0 ? a : b));
+            playerEvents.addAll(other.playerEvents);
+        }
+
+        void report(JobOptions options) throws IOException {
+            int topSeasonType = options.getInt("top-season-type", 10);
+            int topCareer = options.getInt("top-career", 100);
+            String reportDir = options.get("report-dir", null);
+
+            String[] eventHeader = {"SEASON_TYPE", "PLAYER_ID", "PLAYER_NAME", "PLAYER_SLOT", "eWPA", "EVENT_TYPE",
+                    "EVENT_CODE", "DESCRIPTION_TOKENS", "SECONDS_REMAINING", "SCOREMARGIN", "GAME_ID", "PERIOD", "EVENTNUM"};
+            if (options.has("keep-descriptions")) {
+                eventHeader = Arrays.copyOf(eventHeader, eventHeader.length + 2);
+                eventHeader[eventHeader.length - 2] = "HOMEDESCRIPTION";
+                eventHeader[eventHeader.length - 1] = "VISITORDESCRIPTION";
+            }
+            TextTable.show(eventHeader, playerEvents, 100, false);
+
+            // Adjusted_eWPA is still just the raw total, see NBABigData.scorePlayerEvents
+            String[] seasonTypeHeader = {"PLAYER_ID", "PLAYER_NAME", "SEASON_TYPE", "Total_eWPA", "Adjusted_eWPA"};
+            List<Object[]> seasonTypeScores = new ArrayList<>();
+            seasonTypeSums.forEach((key, sum) -> {
+                int playerId = (int) (key / 4);
+                seasonTypeScores.add(new Object[]{playerId, names.get(playerId), SEASON_TYPES[(int) (key % 4)], sum[0], sum[0]});
+            });
+            seasonTypeScores.sort(byScoreDescending(4));
+
+            String[] careerHeader = {"PLAYER_ID", "PLAYER_NAME", "Total_ClutchScore"};
+            List<Object[]> careerScores = new ArrayList<>();
+            careerSums.forEach((playerId, sum) -> {
+                if (names.containsKey(playerId)) {
+                    careerScores.add(new Object[]{playerId, names.get(playerId), sum[0]});
+                }
+            });
+            careerScores.sort(byScoreDescending(2));
+
+            List<Object[]> topSeasonTypeScores = seasonTypeScores.subList(0, Math.min(topSeasonType, seasonTypeScores.size()));
+            System.out.println("Top " + topSeasonType + " Players by Adjusted Clutchness Score:");
+            TextTable.show(seasonTypeHeader, topSeasonTypeScores, topSeasonType, true);
+
+            List<Object[]> topCareerScores = careerScores.subList(0, Math.min(topCareer, careerScores.size()));
+            System.out.println("Top " + topCareer + " Players overall season Adjusted Clutchness Score:");
+            TextTable.show(careerHeader, topCareerScores, topCareer, true);
+
+            if (reportDir != null) {
+                System.out.println("Writing report to " + reportDir);
+                writeCsv(reportDir + "/player_events", eventHeader, playerEvents);
+                writeCsv(reportDir + "/top_season_type", seasonTypeHeader, topSeasonTypeScores);
+                writeCsv(reportDir + "/top_career", careerHeader, topCareerScores);
+                writeCsv(reportDir + "/season_type_scores", seasonTypeHeader, seasonTypeScores);
+                writeCsv(reportDir + "/career_scores", careerHeader, careerScores);
+            }
+        }
+
+        private static Comparator<Object[]> byScoreDescending(int column) {
+            return Comparator.<Object[]>comparingDouble(row -> (Double) row[column]).reversed()
+                    .thenComparingInt(row -> (Integer) row[0]);
+        }
+
+        // Same directory/part file layout the Spark engine writes
+        private static void writeCsv(String dir, String[] header, List<Object[]> rows) throws IOException {
+            Path path = Paths.get(dir);
+            Files.createDirectories(path);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path.resolve("part-00000.csv"), StandardCharsets.UTF_8))) {
+                writer.println(String.join(",", header));
+                for (Object[] row : rows) {
+                    StringJoiner line = new StringJoiner(",");
+                    for (Object cell : row) {
+                        line.add(csvCell(cell));
+                    }
+                    writer.println(line);
+                }
+            }
+        }
+
+        private static String csvCell(Object cell) {
+            if (cell == null) {
+                return "";
+            }
+            String value = cell.toString();
+            if (value.isEmpty() || value.contains(",") || value.contains("\"")) {
+                return "\"" + value.replace("\"", "\\\"") + "\"";
+            }
+            return value;
+        }
+    }
+}
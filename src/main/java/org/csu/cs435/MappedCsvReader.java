@@ -0,0 +1,280 @@
+package org.csu.cs435;
+
+import org.apache.spark.unsafe.Platform;
+import org.apache.spark.unsafe.types.UTF8String;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Memory maps one play-by-play CSV and parses just the columns the local engine needs straight
+// into PlayByPlayColumns. Rows before the 4th quarter are skipped as soon as PERIOD is read, so
+// their descriptions and names are never turned into Strings. Values are read the way the Spark
+// path sees them: empty fields are null, SCOREMARGIN "TIE" is 0 and PCTIMESTRING "M:SS" becomes
+// M * 60 + SS with the same parser PlayEvent.decode uses. Descriptions are scanned for their
+// DescriptionTokens on the field bytes and end up in the same DESCRIPTION_TOKENS and EVENT_CODES masks decode builds, only
+// becoming Strings when keepDescriptions is set.
+final class MappedCsvReader {
+
+    private static final int SKIP = -1;
+    private static final int GAME_ID = 0;
+    private static final int EVENTNUM = 1;
+    private static final int EVENTMSGTYPE = 2;
+    private static final int EVENTMSGACTIONTYPE = 3;
+    private static final int PERIOD = 4;
+    private static final int PCTIMESTRING = 5;
+    private static final int HOMEDESCRIPTION = 6;
+    private static final int VISITORDESCRIPTION = 7;
+    private static final int SCOREMARGIN = 8;
+    private static final int WEEK_OF_SEASON = 9;
+    private static final int PLAYER_ID = 10;   // + slot
+    private static final int PLAYER_NAME = 13; // + slot
+
+    private static final Map<String, Integer> ROLES = new HashMap<>();
+
+    static {
+        ROLES.put("GAME_ID", GAME_ID);
+        ROLES.put("EVENTNUM", EVENTNUM);
+        ROLES.put("EVENTMSGTYPE", EVENTMSGTYPE);
+        ROLES.put("EVENTMSGACTIONTYPE", EVENTMSGACTIONTYPE);
+        ROLES.put("PERIOD", PERIOD);
+        ROLES.put("PCTIMESTRING", PCTIMESTRING);
+        ROLES.put("HOMEDESCRIPTION", HOMEDESCRIPTION);
+        ROLES.put("VISITORDESCRIPTION", VISITORDESCRIPTION);
+        ROLES.put("SCOREMARGIN", SCOREMARGIN);
+        ROLES.put("WEEK_OF_SEASON", WEEK_OF_SEASON);
+        for (int slot = 0; slot < 3; slot++) {
+            ROLES.put("PLAYER" + (slot + 1) + "_ID", PLAYER_ID + slot);
+            ROLES.put("PLAYER" + (slot + 1) + "_NAME", PLAYER_NAME + slot);
+        }
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int limit;
+    private int pos;
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private boolean fieldQuoted;
+    private boolean lineEnded;
+
+    // Names repeat on almost every row, keep one String per distinct name
+    private final Map<String, String> names = new HashMap<>();
+
+    private final boolean keepDescriptions;
+
+    private MappedCsvReader(MappedByteBuffer buffer, boolean keepDescriptions) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.keepDescriptions = keepDescriptions;
+    }
+
+    static PlayByPlayColumns read(Path file) throws IOException {
+        return read(file, false);
+    }
+
+    static PlayByPlayColumns read(Path file, boolean keepDescriptions) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The local engine maps whole files and " + file + " is over 2GB, use the Spark engine");
+            }
+            return new MappedCsvReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), keepDescriptions).parse(file);
+        }
+    }
+
+    private PlayByPlayColumns parse(Path file) throws IOException {
+        PlayByPlayColumns columns = new PlayByPlayColumns(keepDescriptions);
+
+        // Header decides which column index feeds which field
+        int[] roles = new int[64];
+        int columnCount = 0;
+        int periodColumn = -1;
+        int[] seen = new int[PLAYER_NAME + 3];
+        do {
+            nextField(true);
+            String name = new String(field, 0, fieldLength, StandardCharsets.UTF_8).trim();
+            if (columnCount == roles.length) {
+                roles = Arrays.copyOf(roles, roles.length * 2);
+            }
+            int role = ROLES.getOrDefault(name, SKIP);
+            roles[columnCount] = role;
+            if (role == PERIOD) {
+                periodColumn = columnCount;
+            }
+            if (role != SKIP) {
+                seen[role]++;
+            }
+            columnCount++;
+        } while (!lineEnded);
+        for (Map.Entry<String, Integer> entry : ROLES.entrySet()) {
+            if (seen[entry.getValue()] == 0) {
+                throw new IOException(file + " has no " + entry.getKey() + " column");
+            }
+        }
+
+        int[] ints = new int[PLAYER_NAME];
+        String[] strings = new String[PLAYER_NAME + 3];
+        while (pos < limit) {
+            Arrays.fill(ints, PlayByPlayColumns.NULL);
+            Arrays.fill(strings, null);
+            // The description slots hold DescriptionTokens, no tokens for a missing field
+            ints[HOMEDESCRIPTION] = 0;
+            ints[VISITORDESCRIPTION] = 0;
+            int column = 0;
+            boolean keep = true;
+            do {
+                int role = column < columnCount ? roles[column] : SKIP;
+                boolean needed = keep && role != SKIP;
+                nextField(needed);
+                if (needed) {
+                    store(role, ints, strings);
+                    // Keep only 4th quarter and overtime periods, skip the rest of the line otherwise
+                    if (column == periodColumn && (ints[PERIOD] == PlayByPlayColumns.NULL || ints[PERIOD] < 4)) {
+                        keep = false;
+                    }
+                }
+                column++;
+            } while (!lineEnded);
+
+            if (keep && column > 1) {
+                int row = columns.addRow();
+                columns.gameId[row] = ints[GAME_ID];
+                columns.eventNum[row] = ints[EVENTNUM];
+                columns.period[row] = ints[PERIOD];
+                columns.secondsRemaining[row] = ints[PCTIMESTRING];
+                columns.scoreMargin[row] = ints[SCOREMARGIN];
+                columns.weekOfSeason[row] = ints[WEEK_OF_SEASON];
+                boolean anyPlayer = false;
+                for (int slot = 0; slot < 3; slot++) {
+                    columns.playerIds[slot][row] = ints[PLAYER_ID + slot];
+                    columns.playerNames[slot][row] = strings[PLAYER_NAME + slot];
+                    anyPlayer |= strings[PLAYER_NAME + slot] != null;
+                }
+                // A missing home description counts as an empty one, same as decode
+                int tokens = DescriptionTokens.HOME_PRESENT | ints[HOMEDESCRIPTION]
+                        | ints[VISITORDESCRIPTION] << DescriptionTokens.VISITOR;
+                columns.descriptionTokens[row] = tokens;
+                columns.eventCodes[row] = PlayEvent.eventCodes(tokens, ints[EVENTMSGTYPE] != PlayByPlayColumns.NULL,
+                        ints[EVENTMSGACTIONTYPE] != PlayByPlayColumns.NULL, ints[PCTIMESTRING], anyPlayer);
+                if (keepDescriptions) {
+                    columns.homeDescription[row] = strings[HOMEDESCRIPTION];
+                    columns.visitorDescription[row] = strings[VISITORDESCRIPTION];
+                }
+            }
+        }
+        return columns;
+    }
+
+    private void store(int role, int[] ints, String[] strings) {
+        boolean empty = fieldLength == 0;
+        switch (role) {
+            case HOMEDESCRIPTION:
+            case VISITORDESCRIPTION:
+                ints[role] = DescriptionTokens.scan(UTF8String.fromBytes(field, 0, fieldLength));
+                if (keepDescriptions) {
+                    strings[role] = empty ? null : new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+                }
+                break;
+            case PLAYER_NAME:
+            case PLAYER_NAME + 1:
+            case PLAYER_NAME + 2:
+                strings[role] = empty ? null : names.computeIfAbsent(
+                        new String(field, 0, fieldLength, StandardCharsets.UTF_8), name -> name);
+                break;
+            case PCTIMESTRING:
+                int seconds = PlayEvent.parseClock(field, Platform.BYTE_ARRAY_OFFSET, fieldLength);
+                ints[role] = seconds < 0 ? PlayByPlayColumns.NULL : seconds;
+                break;
+            case SCOREMARGIN:
+                ints[role] = fieldLength == 3 && field[0] == 'T' && field[1] == 'I' && field[2] == 'E'
+                        ? 0 : parseInt(0, fieldLength);
+                break;
+            default:
+                ints[role] = parseInt(0, fieldLength);
+        }
+    }
+
+    // Reads the next field into field/fieldLength (only copying it when keep is set) and
+    // leaves pos after its delimiter. lineEnded is set when the field was the last one on its line.
+    private void nextField(boolean keep) {
+        fieldLength = 0;
+        fieldQuoted = false;
+        if (pos < limit && buffer.get(pos) == '"') {
+            fieldQuoted = true;
+            pos++;
+            while (pos < limit) {
+                byte b = buffer.get(pos++);
+                if ((b == '"' || b == '\\') && pos < limit && buffer.get(pos) == '"') {
+                    // "" or \" inside quotes is a literal quote
+                    append(keep, (byte) '"');
+                    pos++;
+                } else if (b == '"') {
+                    break;
+                } else {
+                    append(keep, b);
+                }
+            }
+        }
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            if (!fieldQuoted) {
+                append(keep, b);
+            }
+            pos++;
+        }
+        if (pos < limit && buffer.get(pos) == ',') {
+            pos++;
+            lineEnded = false;
+            return;
+        }
+        if (pos < limit && buffer.get(pos) == '\r') {
+            pos++;
+        }
+        if (pos < limit && buffer.get(pos) == '\n') {
+            pos++;
+        }
+        lineEnded = true;
+    }
+
+    private void append(boolean keep, byte b) {
+        if (!keep) {
+            return;
+        }
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = b;
+    }
+
+    private int parseInt(int from, int to) {
+        if (from >= to) {
+            return PlayByPlayColumns.NULL;
+        }
+        boolean negative = field[from] == '-';
+        int i = negative || field[from] == '+' ? from + 1 : from;
+        if (i >= to) {
+            return PlayByPlayColumns.NULL;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return PlayByPlayColumns.NULL;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return PlayByPlayColumns.NULL;
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+}
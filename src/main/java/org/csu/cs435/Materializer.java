@@ -0,0 +1,78 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.storage.StorageLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Materialization points for datasets that more than one output reads, so every show/write after
+// the first one reads the stored rows instead of re-running the CSV read, the window and the explodes.
+// Picked with --storage=none|memory|memory-disk-ser|checkpoint (checkpoint also needs --checkpoint-dir).
+public final class Materializer {
+
+    public enum Mode {
+        NONE, MEMORY, MEMORY_DISK_SER, CHECKPOINT
+    }
+
+    private final Mode mode;
+    private final List<Dataset<Row>> persisted = new ArrayList<>();
+
+    public Materializer(Mode mode) {
+        this.mode = mode;
+    }
+
+    public static Materializer fromOptions(SparkSession spark, JobOptions options) {
+        Mode mode;
+        switch (options.get("storage", "memory-disk-ser")) {
+            case "none":
+                mode = Mode.NONE;
+                break;
+            case "memory":
+                mode = Mode.MEMORY;
+                break;
+            case "memory-disk-ser":
+                mode = Mode.MEMORY_DISK_SER;
+                break;
+            case "checkpoint":
+                mode = Mode.CHECKPOINT;
+                if (!options.has("checkpoint-dir")) {
+                    throw new IllegalArgumentException("--storage=checkpoint needs --checkpoint-dir=<dir>");
+                }
+                spark.sparkContext().setCheckpointDir(options.get("checkpoint-dir", null));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown --storage value: " + options.get("storage", null));
+        }
+        return new Materializer(mode);
+    }
+
+    public Dataset<Row> materialize(Dataset<Row> df) {
+        switch (mode) {
+            case MEMORY:
+                return track(df.persist(StorageLevel.MEMORY_ONLY()));
+            case MEMORY_DISK_SER:
+                return track(df.persist(StorageLevel.MEMORY_AND_DISK_SER()));
+            case CHECKPOINT:
+                // Eager, writes the rows to the checkpoint dir and cuts the lineage
+                return df.checkpoint(true);
+            default:
+                return df;
+        }
+    }
+
+    // Drop everything we persisted once the outputs are written
+    public void release() {
+        for (Dataset<Row> df : persisted) {
+            df.unpersist();
+        }
+        persisted.clear();
+    }
+
+    private Dataset<Row> track(Dataset<Row> df) {
+        persisted.add(df);
+        return df;
+    }
+}
@@ -2,12 +2,12 @@ package org.csu.cs435;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
-import org.apache.spark.sql.api.java.UDF2;
-import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.functions;
-import org.apache.spark.sql.api.java.UDF1;
-import org.apache.spark.sql.api.java.UDF9;
+import org.apache.spark.sql.streaming.StreamingQueryException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.TimeoutException;
 import static org.apache.spark.sql.functions.*;
 import org.apache.spark.sql.expressions.Window;
 import org.apache.spark.sql.expressions.WindowSpec;
@@ -46,34 +46,118 @@ public class NBABigData {
     }
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, TimeoutException, StreamingQueryException {
+        JobOptions options = JobOptions.parse(args);
+
+        // --engine=local runs everything on this machine without starting Spark at all
+        String engine = options.get("engine", "spark");
+        if (engine.equals("local")) {
+            LocalEngine.run(options);
+            return;
+        } else if (!engine.equals("spark")) {
+            throw new IllegalArgumentException("Unknown --engine value: " + engine);
+        }
 
         SparkSession spark = createSparkSession();
 
-        Dataset<Row> nbaPlayByPlay = readData(spark, args[0]);
+        // eWPA weight table, from --weights=<file> if given
+        EwpaWeights weights = options.has("weights")
+                ? EwpaWeights.load(spark, options.get("weights", null))
+                : EwpaWeights.defaults();
 
-        // Preprocessing Steps
-        Dataset<Row> preprocessedData = preprocessData(nbaPlayByPlay, spark);
+        if (options.has("stream")) {
+            // Keep running, picking up new play-by-play files as they land in the input directory
+            StreamingClutch.run(spark, options, weights);
+            return;
+        }
 
-        // Proceed with Clutchness Calculation
-        Dataset<Row> clutchScores = calculateClutchness(preprocessedData, spark);
+        // Wall time, rows, shuffle and spill per step, written to --metrics-dir at the end
+        PipelineMetrics metrics = PipelineMetrics.install(spark);
+        if (options.has("filter-metrics")) {
+            // Pushed into the CSV scan the PERIOD and season filters drop rows inside the parser, and the metrics
+            // only ever see what is left. Without pushdown they are plain Filter operators with rows in and out,
+            // at the cost of a slower read, so only when asked
+            spark.conf().set("spark.sql.csv.filterPushdown.enabled", false);
+        }
 
-        // Show the top 10 players by Adjusted Clutchness Score
-        System.out.println("Top 10 Players by Adjusted Clutchness Score:");
-        clutchScores.orderBy(functions.desc("Adjusted_eWPA")).show(10);
+        // Everything below reads the materialized datasets instead of re-running the whole lineage per output
+        Materializer materializer = Materializer.fromOptions(spark, options);
+
+        Dataset<Row> nbaPlayByPlay = metrics.step("read", () -> {
+            try {
+                // List the input files, skip seasons outside --season and size the tasks from what's left
+                IngestPlan plan = IngestPlan.create(spark, options.inputPath(), options.getRange("season"));
+                plan.print();
+                plan.configure(spark, options.getInt("task-mb", 128));
+                if (options.has("cache")) {
+                    // Convert new or changed CSVs into the Parquet cache, then read only from the cache
+                    IngestCache.sync(spark, plan, options.get("cache", null));
+                    return IngestCache.read(spark, options.get("cache", null)).filter(plan.seasonFilter(col("SEASON")));
+                }
+                return plan.read(spark);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // The read itself is lazy. Materializing the decoded rows here makes the CSV parse and decode run (and get
+        // timed) inside the read step instead of inside whichever step first pulls rows through it
+        // --keep-descriptions carries the description strings through to the event outputs, for checking events by eye
+        Dataset<Row> playEvents = metrics.materialize("read", materializer,
+                decodeRows(nbaPlayByPlay, options.has("keep-descriptions")));
+
+        Dataset<Row> playerData;
+        if (options.has("single-pass")) {
+            // One shuffle by GAME_ID, then fill/filter/classify/credit each game in a single sorted pass
+            playerData = GameProcessor.playerEvents(playEvents, weights);
+        } else {
+            // Preprocessing Steps
+            Dataset<Row> preprocessedData = preprocessDecoded(playEvents);
 
-        // Corrected grouping by PLAYER_ID and PLAYER_NAME
-        Dataset<Row> playerTotalClutchScores = clutchScores.groupBy("PLAYER_ID", "PLAYER_NAME")
-                .agg(functions.sum("Adjusted_eWPA").alias("Total_ClutchScore"));
+            playerData = explodePlayerEvents(preprocessedData, spark, weights);
+        }
 
-        playerTotalClutchScores = playerTotalClutchScores.filter(col("PLAYER_NAME").isNotNull());
-        // This aggregates all the seasons together for each player
-        // Show the top 10 players by total clutch score
-        System.out.println("Top 10 Players overall season Adjusted Clutchness Score:");
-        playerTotalClutchScores.orderBy(functions.desc("Total_ClutchScore")).show(100);
+        playerData = metrics.materialize("player events", materializer, playerData);
+
+        if (options.has("event-store")) {
+            // Player indexed copy of the events for PlayerQuery
+            Dataset<Row> storeData = playerData;
+            metrics.step("event store", () -> {
+                try {
+                    PlayerEventStore.write(spark, storeData, options.get("event-store", null),
+                            options.getInt("event-store-buckets", 64));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        if (options.has("cube")) {
+            // Player x season x season type x event sums for ClutchCubeQuery, replacing only this run's seasons
+            Dataset<Row> cubeData = playerData;
+            metrics.step("cube", () -> ClutchCube.write(spark, cubeData, weights, options.get("cube", null)));
+        }
+
+        if (options.has("sweep")) {
+            // Score every weight set in the sweep file from one count matrix instead of the normal report
+            Dataset<Row> sweepData = playerData;
+            metrics.step("sweep", () -> {
+                try {
+                    WeightSweep.run(spark, options, sweepData, weights);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } else {
+            // Proceed with Clutchness Calculation
+            ClutchScores clutchScores = new ClutchScores(
+                    metrics.materialize("scores", materializer, scorePlayerEvents(playerData).all()));
 
-        // Optionally, save the results to a file
-        // clutchScores.write().mode("overwrite").csv("clutch_scores.csv");
+            Dataset<Row> reportData = playerData;
+            metrics.step("report", () -> ClutchReport.write(options, reportData, clutchScores));
+        }
+
+        metrics.write(options.get("metrics-dir", "metrics"));
+        materializer.release();
     }
 
 
@@ -84,46 +168,21 @@ public class NBABigData {
                 .getOrCreate();
     }
 
-    private static Dataset<Row> readData(final SparkSession spark, final String filePath) {
-        if (filePath.endsWith(".csv")) {
-            return spark.read()
-                    .option("header", "true")
-                    .option("inferSchema", "true")
-                    .csv(filePath);
-        } else {
-            return spark.read()
-                    .option("header", "true")
-                    .option("inferSchema", "true")
-                    .csv(filePath + "/*.csv");
+    // Every play-by-play file under filePath (or just that file), without touching the session's partition settings
+    static Dataset<Row> readData(final SparkSession spark, final String filePath) {
+        try {
+            return IngestPlan.create(spark, filePath, null).read(spark);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private static Dataset<Row> preprocessData(Dataset<Row> df, SparkSession spark) {
-        // Apply Season Type
-        df = applySeasonType(df);
-
-        // Keep only 4th quarter and overtime periods, OT is period 5 so this should work
-        df = filterByPeriod(df);
-
-        // Register User defined function(UDF) so we can grab time on clock
-        spark.udf().register("timeStringToSeconds", (UDF2<String, String, Integer>) NBABigData::convertTimeStringToSeconds, DataTypes.IntegerType);
-
-    // Extract hours and minutes from PCTIMESTRING
-        df = df.withColumn("seconds_part", functions.minute(df.col("PCTIMESTRING")).cast(DataTypes.StringType));
-        df = df.withColumn("minutes_part", functions.hour(df.col("PCTIMESTRING")).cast(DataTypes.StringType));
-
-    // PCTIMESTRING is the time on the clock as a timestampobject
-        df = df.withColumn("SECONDS_REMAINING", functions.callUDF("timeStringToSeconds", df.col("minutes_part"), df.col("seconds_part")));
-
-        // Replace "TIE" with 0 directly in the SCOREMARGIN column
-        df = df.withColumn("SCOREMARGIN",
-                when(col("SCOREMARGIN").equalTo("TIE"), lit(0))  // If SCOREMARGIN is "TIE", set it to 0
-                        .otherwise(col("SCOREMARGIN")) // Otherwise, keep the original value
-        );
-
-        // Convert SCOREMARGIN to Integer type
-        df = df.withColumn("SCOREMARGIN", col("SCOREMARGIN").cast(DataTypes.IntegerType));
+    static Dataset<Row> preprocessData(Dataset<Row> df, SparkSession spark) {
+        return preprocessDecoded(decodeRows(df));
+    }
 
+    // The part of preprocessData after decodeRows: margin forward fill and the clutch filters
+    static Dataset<Row> preprocessDecoded(Dataset<Row> df) {
         // We need to partition by game ID and order by event num so we can forward propogate the stupid scoremargin
         WindowSpec windowSpec = Window.partitionBy("GAME_ID")
                 .orderBy("EVENTNUM")
@@ -148,45 +207,28 @@ public class NBABigData {
         return df;
     }
 
-    private static Dataset<Row> applySeasonType(Dataset<Row> df) {
-        // Apply Season Type based on WEEK_OF_SEASON
-        df = df.withColumn("SEASON_TYPE", functions.when(
-                functions.col("WEEK_OF_SEASON").geq(1).and(functions.col("WEEK_OF_SEASON").leq(24)),
-                "Regular Season"
-        ).when(
-                functions.col("WEEK_OF_SEASON").geq(25).and(functions.col("WEEK_OF_SEASON").leq(30)),
-                "Playoffs"
-        ).when(
-                functions.col("WEEK_OF_SEASON").geq(31).and(functions.col("WEEK_OF_SEASON").leq(33)),
-                "Finals"
-        ).otherwise("Unknown"));
-
-        return df;
+    // Row level steps of preprocessing that don't need the rest of the game (no shuffle): period filter, season
+    // type, SECONDS_REMAINING from the clock, int SCOREMARGIN and the event codes, all in the compact
+    // PlayEvent columns
+    static Dataset<Row> decodeRows(Dataset<Row> df) {
+        return decodeRows(df, false);
     }
 
-    private static Dataset<Row> filterByPeriod(Dataset<Row> df) {
-        // Keep only events from 4th quarter (Period 4) and overtime periods (Period >= 5)
-        df = df.filter(functions.col("PERIOD").geq(4));
-
-        return df;
-    }
-
-    public static int convertTimeStringToSeconds(String minutes, String seconds) {
-        if (minutes == null || minutes.isEmpty() || seconds == null || seconds.isEmpty()) {
-            return -1;
-        }
-        try {
-            int minutesInt = Integer.parseInt(minutes);
-            int secondsInt = Integer.parseInt(seconds);
-            return minutesInt * 60 + secondsInt;
-        } catch (NumberFormatException e) {
-            return -1;
-        }
+    static Dataset<Row> decodeRows(Dataset<Row> df, boolean keepDescriptions) {
+        return PlayEvent.decode(df, keepDescriptions);
     }
 
     public static List<String> classifyEvent(Integer eventMsgType, Integer eventMsgActionType, String homeDescription,
                                              String awayDescription, Integer secondsRemaining, Integer scoreMargin,
                                              String player1Name, String player2Name, String player3Name) {
+        return classifyEvent(eventMsgType, eventMsgActionType, DescriptionTokens.of(homeDescription, awayDescription),
+                secondsRemaining, scoreMargin, player1Name, player2Name, player3Name);
+    }
+
+    // Same, with the descriptions already scanned into a DescriptionTokens mask
+    public static List<String> classifyEvent(Integer eventMsgType, Integer eventMsgActionType, int tokens,
+                                             Integer secondsRemaining, Integer scoreMargin,
+                                             String player1Name, String player2Name, String player3Name) {
         List<String> eventTypes = new ArrayList<>();
 
         if (eventMsgType == null) {
@@ -198,34 +240,33 @@ public class NBABigData {
 
         int absScoreMargin = Math.abs(scoreMargin);
 
-        // Normalize descriptions to uppercase for case-insensitive matching
-        if (homeDescription != null) homeDescription = homeDescription.toUpperCase();
-        if (awayDescription != null) awayDescription = awayDescription.toUpperCase();
+        boolean hasHomeDescription = (tokens & DescriptionTokens.HOME_PRESENT) != 0;
+        boolean isMissed = DescriptionTokens.either(tokens, DescriptionTokens.MISS);
 
         // Detect assists
-        if (isAssist(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.ASSIST)) {
             eventTypes.add(isLast10Seconds ? "Assist (Last 10 Seconds)" : "Assist");
         }
 
         // Detect steals
-        if (isSteal(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.STEAL)) {
             eventTypes.add(isLast10Seconds ? "STEAL (Last 10 Seconds)" : "STEAL");
         }
 
         // Detect blocks
-        if (isBlock(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.BLOCK)) {
             eventTypes.add(isLast10Seconds ? "BLOCK (Last 10 Seconds)" : "BLOCK");
         }
 
         // Detect turnovers
-        if (isTurnover(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.TURNOVER)) {
             if (player1Name != null || player2Name != null || player3Name != null) {
                 eventTypes.add(isLast10Seconds ? "Turnover (Last 10 Seconds)" : "Turnover");
             }
         }
 
         // Detect rebounds
-        if (isRebound(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.REBOUND)) {
             if (player1Name != null || player2Name != null || player3Name != null) {
                 eventTypes.add(isLast10Seconds ? "Rebound (Last 10 Seconds)" : "Rebound");
             }
@@ -233,23 +274,23 @@ public class NBABigData {
 
         // Detect shots (3-pointers and 2-pointers, made and missed)
         if (eventMsgActionType != null) {
-            if (isThreePointer(homeDescription, awayDescription)) {
-                if (isMissedShot(homeDescription, awayDescription)) {
+            if (DescriptionTokens.either(tokens, DescriptionTokens.THREE_POINTER)) {
+                if (isMissed) {
                     eventTypes.add((isLast10Seconds && absScoreMargin <= 3) ? "Missed 3-Point Shot (Clutch Margin)" : "Missed 3-Point Shot");
                 } else {
-                    if (isLast10Seconds && homeDescription != null && scoreMargin <= 0 && absScoreMargin <= 3) {
+                    if (isLast10Seconds && hasHomeDescription && scoreMargin <= 0 && absScoreMargin <= 3) {
                         eventTypes.add("Made 3-Point Shot (Clutch Margin)");
-                    } else if(isLast10Seconds && homeDescription == null && scoreMargin >= 0 && absScoreMargin <= 3){
+                    } else if(isLast10Seconds && !hasHomeDescription && scoreMargin >= 0 && absScoreMargin <= 3){
                         eventTypes.add("Made 3-Point Shot (Clutch Margin)");
                     }else {
                         eventTypes.add(isLast10Seconds ? "Made 3-Point Shot (Last 10 Seconds)" : "Made 3-Point Shot");
                     }
                 }
-            } else if (isTwoPointer(homeDescription, awayDescription)) {
-                if (isMissedShot(homeDescription, awayDescription)) {
+            } else if (DescriptionTokens.twoPointer(tokens)) {
+                if (isMissed) {
                     eventTypes.add((isLast10Seconds && absScoreMargin <= 2) ? "Missed 2-Point Shot (Clutch Margin)" : "Missed 2-Point Shot");
                 } else {
-                    if ((isLast10Seconds && homeDescription != null && scoreMargin <= 0 && absScoreMargin <= 2) || isLast10Seconds && homeDescription == null && scoreMargin >= 0 && absScoreMargin <= 2) {
+                    if ((isLast10Seconds && hasHomeDescription && scoreMargin <= 0 && absScoreMargin <= 2) || isLast10Seconds && !hasHomeDescription && scoreMargin >= 0 && absScoreMargin <= 2) {
                         eventTypes.add("Made 2-Point Shot (Clutch Margin)");
                     } else {
                         eventTypes.add(isLast10Seconds ? "Made 2-Point Shot (Last 10 Seconds)" : "Made 2-Point Shot");
@@ -259,8 +300,8 @@ public class NBABigData {
         }
 
         // Detect free throws
-        if (isFreeThrow(homeDescription, awayDescription)) {
-            if (isMissedShot(homeDescription, awayDescription)) {
+        if (DescriptionTokens.either(tokens, DescriptionTokens.FREE_THROW)) {
+            if (isMissed) {
                 eventTypes.add(isLast10Seconds ? "Missed Free Throw (Last 10 Seconds)" : "Missed Free Throw");
             } else {
                 eventTypes.add(isLast10Seconds ? "Made Free Throw (Last 10 Seconds)" : "Made Free Throw");
@@ -275,30 +316,30 @@ public class NBABigData {
     }
 
 
-//helpers, now with all caps
-    private static boolean isThreePointer(String homeDescription, String visitorDescription) {
+//helpers on upper cased descriptions, classifyEvent goes through DescriptionTokens instead
+    static boolean isThreePointer(String homeDescription, String visitorDescription) {
         return (homeDescription != null && homeDescription.contains("3PT")) ||
                 (visitorDescription != null && visitorDescription.contains("3PT"));
     }
 
-    private static boolean isTwoPointer(String homeDescription, String visitorDescription) {
+    static boolean isTwoPointer(String homeDescription, String visitorDescription) {
         return ((homeDescription != null && !homeDescription.contains("3PT") &&
                 (homeDescription.contains("DUNK") || homeDescription.contains("LAYUP") || homeDescription.contains("SHOT"))) ||
                 (visitorDescription != null && !visitorDescription.contains("3PT") &&
                         (visitorDescription.contains("DUNK") || visitorDescription.contains("LAYUP") || visitorDescription.contains("SHOT"))));
     }
 
-    private static boolean isMissedShot(String homeDescription, String visitorDescription) {
+    static boolean isMissedShot(String homeDescription, String visitorDescription) {
         return (homeDescription != null && homeDescription.contains("MISS")) ||
                 (visitorDescription != null && visitorDescription.contains("MISS"));
     }
 
-    private static boolean isFreeThrow(String homeDescription, String visitorDescription) {
+    static boolean isFreeThrow(String homeDescription, String visitorDescription) {
         return (homeDescription != null && homeDescription.contains("FREE THROW")) ||
                 (visitorDescription != null && visitorDescription.contains("FREE THROW"));
     }
 
-    private static boolean isRebound(String homeDescription, String visitorDescription) {
+    static boolean isRebound(String homeDescription, String visitorDescription) {
         return (homeDescription != null && homeDescription.contains("REBOUND")) ||
                 (visitorDescription != null && visitorDescription.contains("REBOUND"));
     }
@@ -329,104 +370,100 @@ public class NBABigData {
         return eWPAValues.getOrDefault(eventType, 0.0);
     }
 
-    private static Dataset<Row> calculateClutchness(Dataset<Row> df, SparkSession spark) {
-        // Prepare descriptions
-        df = df.withColumn("HOMEDESCRIPTION", functions.coalesce(df.col("HOMEDESCRIPTION"), functions.lit("")))
-                .withColumn("VISITORDESCRIPTION", functions.coalesce(df.col("VISITORDESCRIPTION"), functions.lit("")));
-
-        // Register UDFs
-        spark.udf().register("classifyEvent",
-                (UDF9<Integer, Integer, String, String, Integer, Integer, String, String, String, List<String>>) NBABigData::classifyEvent,
-                DataTypes.createArrayType(DataTypes.StringType));
-        spark.udf().register("getEwpaValue", (UDF1<String, Double>) NBABigData::getEwpaValue, DataTypes.DoubleType);
-
-        // Classify events (returns an array of event types)
-        df = df.withColumn("EVENT_TYPES", functions.callUDF("classifyEvent",
-                df.col("EVENTMSGTYPE"), df.col("EVENTMSGACTIONTYPE"), df.col("HOMEDESCRIPTION"),
-                df.col("VISITORDESCRIPTION"), df.col("SECONDS_REMAINING"), df.col("SCOREMARGIN"),
-                df.col("PLAYER1_NAME"), df.col("PLAYER2_NAME"), df.col("PLAYER3_NAME")));
-
-        // Explode EVENT_TYPES to create one row per event type
-        df = df.withColumn("EVENT_TYPE", functions.explode(df.col("EVENT_TYPES")));
-
-        // Assign eWPA values for each event type
-        df = df.withColumn("eWPA", functions.callUDF("getEwpaValue", df.col("EVENT_TYPE")));
-
-        // Initialize eWPA columns for each player
-        df = df.withColumn("PLAYER1_eWPA", functions.lit(0.0))
-                .withColumn("PLAYER2_eWPA", functions.lit(0.0))
-                .withColumn("PLAYER3_eWPA", functions.lit(0.0));
+    static ClutchScores calculateClutchness(Dataset<Row> df, SparkSession spark, EwpaWeights weights) {
+        return scorePlayerEvents(explodePlayerEvents(df, spark, weights));
+    }
 
-        // Assign eWPA to players based on event type and role
-        df = assignEwpaToPlayers(df);
+    // One row per player slot per classified event, with the eWPA that slot was credited
+    static Dataset<Row> explodePlayerEvents(Dataset<Row> df, SparkSession spark, EwpaWeights weights) {
+        // Finish the EVENT_CODES decodeRows worked out with the filled margin (returns an array of EventCode
+        // values, same order as classifyEvent)
+        df = df.withColumn("CLASSIFIED_CODES", EventClassifier.classify(
+                df.col("EVENT_CODES"), df.col("SECONDS_REMAINING"), df.col("SCOREMARGIN")));
+
+        // Explode CLASSIFIED_CODES to create one row per event type
+        df = df.withColumn("EVENT_CODE", functions.explode(df.col("CLASSIFIED_CODES")));
+        df = df.withColumn("EVENT_TYPE", EventClassifier.label(df.col("EVENT_CODE")));
+
+        // Assign eWPA values and the credited player slot for each event type straight from the code
+        df = df.withColumn("eWPA", weights.weight(df.col("EVENT_CODE")));
+        df = df.withColumn("CREDITED_PLAYER", weights.creditedPlayer(df.col("EVENT_CODE")));
+
+        // Assign eWPA to players based on event type and role, everyone else gets 0
+        for (int slot = 1; slot <= 3; slot++) {
+            df = df.withColumn("PLAYER" + slot + "_eWPA",
+                    functions.when(df.col("CREDITED_PLAYER").equalTo(slot), df.col("eWPA")).otherwise(functions.lit(0.0)));
+        }
 
-        // Create an array of structs containing PLAYER_ID, PLAYER_NAME, and eWPA
+        // Create an array of structs containing PLAYER_ID, PLAYER_NAME, PLAYER_SLOT, and eWPA
         df = df.withColumn("players_eWPA", functions.array(
-                functions.struct(df.col("PLAYER1_ID").alias("PLAYER_ID"), df.col("PLAYER1_NAME").alias("PLAYER_NAME"), df.col("PLAYER1_eWPA").alias("eWPA")),
-                functions.struct(df.col("PLAYER2_ID").alias("PLAYER_ID"), df.col("PLAYER2_NAME").alias("PLAYER_NAME"), df.col("PLAYER2_eWPA").alias("eWPA")),
-                functions.struct(df.col("PLAYER3_ID").alias("PLAYER_ID"), df.col("PLAYER3_NAME").alias("PLAYER_NAME"), df.col("PLAYER3_eWPA").alias("eWPA"))
+                functions.struct(df.col("PLAYER1_ID").alias("PLAYER_ID"), df.col("PLAYER1_NAME").alias("PLAYER_NAME"), functions.lit(1).alias("PLAYER_SLOT"), df.col("PLAYER1_eWPA").alias("eWPA")),
+                functions.struct(df.col("PLAYER2_ID").alias("PLAYER_ID"), df.col("PLAYER2_NAME").alias("PLAYER_NAME"), functions.lit(2).alias("PLAYER_SLOT"), df.col("PLAYER2_eWPA").alias("eWPA")),
+                functions.struct(df.col("PLAYER3_ID").alias("PLAYER_ID"), df.col("PLAYER3_NAME").alias("PLAYER_NAME"), functions.lit(3).alias("PLAYER_SLOT"), df.col("PLAYER3_eWPA").alias("eWPA"))
         ));
 
         // Explode the array to create one row per player per event
         df = df.withColumn("player_eWPA", functions.explode(df.col("players_eWPA")));
 
-        Dataset<Row> playerData = df.select(
+        List<String> columns = new ArrayList<>(Arrays.asList(
                 "SEASON_TYPE",
                 "player_eWPA.PLAYER_ID",
                 "player_eWPA.PLAYER_NAME",
+                "player_eWPA.PLAYER_SLOT",
                 "player_eWPA.eWPA",
                 "EVENT_TYPE",
-                "HOMEDESCRIPTION",
-                "VISITORDESCRIPTION",
+                "EVENT_CODE",
+                // Token mask of the row's descriptions, for filtering events with DescriptionTokens.has
+                "DESCRIPTION_TOKENS",
                 "SECONDS_REMAINING",
-                "SCOREMARGIN"
-        );
-        String playerName = "John Stockton"; //change this line for the player you want to see
-        Dataset<Row> playerEvents = playerData.filter(col("PLAYER_NAME").equalTo(playerName));
-        playerEvents.show(100, false);
+                "SCOREMARGIN",
+                "GAME_ID",
+                "PERIOD",
+                "EVENTNUM"
+        ));
+        // Only there when decodeRows kept them
+        if (Arrays.asList(df.columns()).contains("HOMEDESCRIPTION")) {
+            columns.add("HOMEDESCRIPTION");
+            columns.add("VISITORDESCRIPTION");
+        }
+        Dataset<Row> playerData = df.selectExpr(columns.toArray(new String[0]));
+        return playerData;
+    }
+
+    static ClutchScores scorePlayerEvents(Dataset<Row> playerData) {
         // Select the relevant columns
-        df = df.select("SEASON_TYPE", "player_eWPA.PLAYER_ID", "player_eWPA.PLAYER_NAME", "player_eWPA.eWPA");
+        Dataset<Row> df = playerData.select("SEASON_TYPE", "PLAYER_ID", "PLAYER_NAME", "eWPA");
 
         // Filter out null PLAYER_IDs and zero eWPA
         df = df.filter(df.col("PLAYER_ID").isNotNull().and(df.col("eWPA").notEqual(0.0)));
 
-        // Aggregate clutchness scores per player and season type
-        Dataset<Row> playerClutchScores = df.groupBy("PLAYER_ID", "PLAYER_NAME", "SEASON_TYPE")
-                .agg(functions.sum("eWPA").alias("Total_eWPA"));
-
         // Adjust for game importance FiX tHiS laTER
-       /* playerClutchScores = playerClutchScores.withColumn("Adjusted_eWPA", functions.when(
-                functions.col("SEASON_TYPE").equalTo("Regular Season"), functions.col("Total_eWPA")
+        // Done per row so the career totals in the rollup add up the adjusted values.
+        // Weighting is still disabled, so Adjusted_eWPA is just the raw eWPA for now
+       /* df = df.withColumn("Adjusted_eWPA", functions.when(
+                functions.col("SEASON_TYPE").equalTo("Regular Season"), functions.col("eWPA")
         ).when(
-                functions.col("SEASON_TYPE").equalTo("Playoffs"), functions.col("Total_eWPA").multiply(1.5)
+                functions.col("SEASON_TYPE").equalTo("Playoffs"), functions.col("eWPA").multiply(1.5)
         ).when(
-                functions.col("SEASON_TYPE").equalTo("Finals"), functions.col("Total_eWPA").multiply(2.0)
-        ).otherwise(functions.col("Total_eWPA")));
-
-        return playerClutchScores;
+                functions.col("SEASON_TYPE").equalTo("Finals"), functions.col("eWPA").multiply(2.0)
+        ).otherwise(functions.col("eWPA")));
+        */
+        df = df.withColumn("Adjusted_eWPA", functions.col("eWPA"));
+
+        // One shuffle on the numeric PLAYER_ID for both levels: (player, season type) rows and the
+        // per player rollup rows where SEASON_TYPE is rolled away. The (null, null) grand total is dropped.
+        // The name rides along as a max() in the same aggregate, so after the partial aggregation it is one
+        // string per player and season type in the shuffle instead of a key on every row or a second aggregation.
+        Dataset<Row> rolledUp = df.rollup("PLAYER_ID", "SEASON_TYPE")
+                .agg(functions.max("PLAYER_NAME").alias("PLAYER_NAME"),
+                        functions.sum("eWPA").alias("Total_eWPA"),
+                        functions.sum("Adjusted_eWPA").alias("Adjusted_eWPA"),
+                        functions.grouping("SEASON_TYPE").alias("IS_CAREER"))
+                .filter(col("PLAYER_ID").isNotNull());
+
+        return new ClutchScores(rolledUp);
     }
-*/
-    private static Dataset<Row> assignEwpaToPlayers(Dataset<Row> df) {
-        // Assign eWPA to PLAYER1 for shots, free throws, rebounds, and turnovers
-        df = df.withColumn("PLAYER1_eWPA", functions.when(
-                functions.col("EVENT_TYPE").rlike("^Made.*Shot.*|^Missed.*Shot.*|^Made Free Throw.*|^Missed Free Throw.*|^Rebound.*|^Turnover.*"),
-                df.col("eWPA")
-        ).otherwise(df.col("PLAYER1_eWPA")));
-
-        // Assign eWPA to PLAYER2 for assists and steals
-        df = df.withColumn("PLAYER2_eWPA", functions.when(
-                functions.col("EVENT_TYPE").rlike("^Assist.*|^STEAL.*"),
-                df.col("eWPA")
-        ).otherwise(df.col("PLAYER2_eWPA")));
-
-        // Assign eWPA to PLAYER3 for blocks
-        df = df.withColumn("PLAYER3_eWPA", functions.when(
-                functions.col("EVENT_TYPE").rlike("^BLOCK.*"),
-                df.col("eWPA")
-        ).otherwise(df.col("PLAYER3_eWPA")));
 
-        return df;
-    }
 
 
 }
@@ -0,0 +1,424 @@
+package org.csu.cs435;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.SparkContext;
+import org.apache.spark.executor.TaskMetrics;
+import org.apache.spark.scheduler.SparkListener;
+import org.apache.spark.scheduler.SparkListenerJobStart;
+import org.apache.spark.scheduler.SparkListenerTaskEnd;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.execution.ui.SQLAppStatusStore;
+import org.apache.spark.sql.execution.ui.SQLPlanMetric;
+import org.apache.spark.sql.execution.ui.SparkPlanGraph;
+import org.apache.spark.sql.execution.ui.SparkPlanGraphEdge;
+import org.apache.spark.sql.execution.ui.SparkPlanGraphNode;
+import scala.collection.JavaConverters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Per step metrics for a run. Each pipeline step runs inside step(...), which tags every Spark job it starts
+// with the step name (a local property), and a SparkListener adds the task metrics of those jobs up per step.
+// After the run the SQL plan graphs of each step's queries give rows per operator, so we can see how many rows
+// every Filter, Window, Generate and aggregate let through. Filters Spark pushes into the CSV scan don't show up
+// as operators; --filter-metrics turns that pushdown off so the PERIOD and season filters get their own counts.
+// Written to <--metrics-dir>/pipeline_metrics.json and pipeline_metrics.prom (Prometheus text format, fine for
+// the node exporter textfile collector). Default dir is ./metrics.
+//
+// Per step: wall time on the driver, rows in (rows the step's scans produced, CSV or cached rows),
+// rows out (rows the step materialized, where it has one output), shuffle bytes/records read and written,
+// memory and disk spill, executor run time, job/stage/task counts.
+// Only batch runs on the Spark engine are covered. --engine=local has no Spark jobs to listen to and --stream
+// never finishes a run, so neither writes these files.
+public final class PipelineMetrics {
+
+    static final String STEP_PROPERTY = "nba.pipeline.step";
+    private static final String EXECUTION_ID_PROPERTY = "spark.sql.execution.id";
+
+    private final SparkSession spark;
+    private final long started = System.currentTimeMillis();
+    // Step names in the order they ran, also read by the listener
+    private final Map<String, Step> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+    // Filled on the listener bus thread
+    private final Map<Integer, String> stageSteps = new ConcurrentHashMap<>();
+    private final Map<Long, String> executionSteps = new ConcurrentHashMap<>();
+
+    private PipelineMetrics(SparkSession spark) {
+        this.spark = spark;
+    }
+
+    public static PipelineMetrics install(SparkSession spark) {
+        PipelineMetrics metrics = new PipelineMetrics(spark);
+        spark.sparkContext().addSparkListener(metrics.new StepListener());
+        return metrics;
+    }
+
+    public <T> T step(String name, Supplier<T> body) {
+        Step step = steps.computeIfAbsent(name, Step::new);
+        SparkContext sc = spark.sparkContext();
+        String outer = sc.getLocalProperty(STEP_PROPERTY);
+        sc.setLocalProperty(STEP_PROPERTY, name);
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            step.wallNanos += System.nanoTime() - start;
+            sc.setLocalProperty(STEP_PROPERTY, outer);
+        }
+    }
+
+    public void step(String name, Runnable body) {
+        step(name, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    // Materializes df as its own step, so the work that builds it is timed here and not in whatever reads it first.
+    // The count that forces it gives the step's rows out. (With --storage=none that count is an extra pass.)
+    public Dataset<Row> materialize(String name, Materializer materializer, Dataset<Row> df) {
+        return step(name, () -> {
+            Dataset<Row> materialized = materializer.materialize(df);
+            steps.get(name).rowsOut = materialized.count();
+            return materialized;
+        });
+    }
+
+    public void write(String dir) throws IOException {
+        // Task end and SQL execution events are delivered asynchronously, wait for all of them to land
+        try {
+            spark.sparkContext().listenerBus().waitUntilEmpty(60_000);
+        } catch (TimeoutException e) {
+            System.err.println("Pipeline metrics may be incomplete, Spark listener events are still queued");
+        }
+        addOperatorRows();
+
+        Path root = new Path(dir);
+        FileSystem fs = root.getFileSystem(spark.sparkContext().hadoopConfiguration());
+        fs.mkdirs(root);
+        try (FSDataOutputStream out = fs.create(new Path(root, "pipeline_metrics.json"), true)) {
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue((OutputStream) out, toJson());
+        }
+        try (FSDataOutputStream out = fs.create(new Path(root, "pipeline_metrics.prom"), true)) {
+            out.write(toPrometheus().getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println("Wrote pipeline metrics to " + dir);
+    }
+
+    // Rows per plan operator for every SQL query the step ran, from the same metrics the SQL tab of the UI shows
+    private void addOperatorRows() {
+        SQLAppStatusStore store = spark.sharedState().statusStore();
+        for (Map.Entry<Long, String> entry : new TreeMap<>(executionSteps).entrySet()) {
+            Step step = steps.get(entry.getValue());
+            if (step == null || store.execution(entry.getKey()).isEmpty()) {
+                continue;
+            }
+            SparkPlanGraph graph = store.planGraph(entry.getKey());
+            Map<Object, String> values = JavaConverters.mapAsJavaMap(store.executionMetrics(entry.getKey()));
+
+            Map<Long, SparkPlanGraphNode> nodes = new HashMap<>();
+            Map<Long, Long> rows = new HashMap<>();
+            for (SparkPlanGraphNode node : JavaConverters.seqAsJavaList(graph.allNodes())) {
+                nodes.put(node.id(), node);
+                for (SQLPlanMetric metric : JavaConverters.seqAsJavaList(node.metrics())) {
+                    String value = values.get(metric.accumulatorId());
+                    if (metric.name().equals("number of output rows") && value != null) {
+                        rows.put(node.id(), Long.parseLong(value.replace(",", "")));
+                    }
+                }
+            }
+            // Edges go from child to parent
+            Map<Long, List<Long>> children = new HashMap<>();
+            Set<Long> hasParent = new HashSet<>();
+            for (SparkPlanGraphEdge edge : JavaConverters.seqAsJavaList(graph.edges())) {
+                children.computeIfAbsent(edge.toId(), id -> new ArrayList<>()).add(edge.fromId());
+                hasParent.add(edge.fromId());
+            }
+
+            Set<Long> visited = new HashSet<>();
+            for (long id : new TreeSet<>(nodes.keySet())) {
+                if (!hasParent.contains(id)) {
+                    addOperators(step, entry.getKey(), id, nodes, children, rows, visited);
+                }
+            }
+        }
+        for (Step step : steps.values()) {
+            // Jobs that aren't SQL queries (like CSV schema inference) only show up in the input records
+            step.rowsIn = Math.max(step.scannedRows, step.inputRecords);
+        }
+    }
+
+    private void addOperators(Step step, long executionId, long id, Map<Long, SparkPlanGraphNode> nodes,
+                              Map<Long, List<Long>> children, Map<Long, Long> rows, Set<Long> visited) {
+        if (!visited.add(id)) {
+            return;
+        }
+        SparkPlanGraphNode node = nodes.get(id);
+        String name = node.name().trim();
+        List<Long> inputs = children.getOrDefault(id, Collections.emptyList());
+        Long rowsOut = rows.get(id);
+
+        if (name.equals("InMemoryTableScan") && scannedRows(inputs, children, nodes, rows) == 0) {
+            // Rows cached by an earlier step. The plan that built them still hangs under this node but didn't run
+            // here, so stop at the cache
+            if (rowsOut != null) {
+                step.operators.add(new Operator(executionId, id, name, describe(node), null, rowsOut));
+                step.scannedRows += rowsOut;
+            }
+            return;
+        }
+
+        if (rowsOut != null) {
+            Long rowsIn = inputs.isEmpty() ? null : rowsBelow(inputs, children, rows);
+            step.operators.add(new Operator(executionId, id, name, describe(node), rowsIn, rowsOut));
+            if (inputs.isEmpty() && name.contains("Scan")) {
+                // CSV or Parquet rows coming in (after any filters Spark pushed into the scan)
+                step.scannedRows += rowsOut;
+            }
+        }
+        for (long child : inputs) {
+            addOperators(step, executionId, child, nodes, children, rows, visited);
+        }
+    }
+
+    // Rows the scans under `ids` produced in this query, stopping at cached scans
+    private static long scannedRows(List<Long> ids, Map<Long, List<Long>> children, Map<Long, SparkPlanGraphNode> nodes,
+                                    Map<Long, Long> rows) {
+        long total = 0;
+        for (long id : ids) {
+            List<Long> below = children.getOrDefault(id, Collections.emptyList());
+            if (below.isEmpty() || nodes.get(id).name().trim().equals("InMemoryTableScan")) {
+                total += rows.getOrDefault(id, 0L);
+            } else {
+                total += scannedRows(below, children, nodes, rows);
+            }
+        }
+        return total;
+    }
+
+    // Rows coming out of the nearest operators under `ids` that count rows (Project, codegen input adapters and
+    // the like don't)
+    private static Long rowsBelow(List<Long> ids, Map<Long, List<Long>> children, Map<Long, Long> rows) {
+        long total = 0;
+        for (long id : ids) {
+            Long own = rows.get(id);
+            if (own == null) {
+                List<Long> below = children.getOrDefault(id, Collections.emptyList());
+                own = below.isEmpty() ? null : rowsBelow(below, children, rows);
+            }
+            if (own == null) {
+                return null;
+            }
+            total += own;
+        }
+        return total;
+    }
+
+    private static String describe(SparkPlanGraphNode node) {
+        String desc = node.desc().replaceAll("#\\d+L?", "").replaceAll("\\s+", " ");
+        return desc.length() > 200 ? desc.substring(0, 197) + "..." : desc;
+    }
+
+    private Map<String, Object> toJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("application", spark.sparkContext().appName());
+        json.put("started", started);
+        json.put("wallMillis", System.currentTimeMillis() - started);
+        List<Object> stepList = new ArrayList<>();
+        for (Step step : steps.values()) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("step", step.name);
+            s.put("wallMillis", step.wallNanos / 1_000_000);
+            s.put("rowsIn", step.rowsIn);
+            s.put("rowsOut", step.rowsOut);
+            s.put("jobs", step.jobs);
+            s.put("stages", step.stages.size());
+            s.put("tasks", step.tasks);
+            s.put("executorRunMillis", step.executorRunMillis);
+            s.put("inputRecords", step.inputRecords);
+            s.put("inputBytes", step.inputBytes);
+            s.put("shuffleReadRecords", step.shuffleReadRecords);
+            s.put("shuffleReadBytes", step.shuffleReadBytes);
+            s.put("shuffleWriteRecords", step.shuffleWriteRecords);
+            s.put("shuffleWriteBytes", step.shuffleWriteBytes);
+            s.put("memorySpillBytes", step.memorySpillBytes);
+            s.put("diskSpillBytes", step.diskSpillBytes);
+            List<Object> operators = new ArrayList<>();
+            for (Operator operator : step.operators) {
+                Map<String, Object> o = new LinkedHashMap<>();
+                o.put("query", operator.executionId);
+                o.put("node", operator.nodeId);
+                o.put("operator", operator.name);
+                o.put("description", operator.description);
+                o.put("rowsIn", operator.rowsIn);
+                o.put("rowsOut", operator.rowsOut);
+                operators.add(o);
+            }
+            s.put("operators", operators);
+            stepList.add(s);
+        }
+        json.put("steps", stepList);
+        return json;
+    }
+
+    private String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        gauge(out, "nba_pipeline_wall_seconds", "Driver wall time of the whole run");
+        out.append("nba_pipeline_wall_seconds ").append((System.currentTimeMillis() - started) / 1000.0).append('\n');
+
+        stepGauge(out, "nba_step_wall_seconds", "Driver wall time per pipeline step", step -> step.wallNanos / 1e9);
+        stepGauge(out, "nba_step_rows_in", "Rows read by the scans of each step", step -> step.rowsIn);
+        stepGauge(out, "nba_step_rows_out", "Rows materialized by each step (-1 if it has no single output)", step -> step.rowsOut);
+        stepGauge(out, "nba_step_tasks", "Spark tasks run per step", step -> step.tasks);
+        stepGauge(out, "nba_step_executor_run_seconds", "Executor run time added up over tasks per step", step -> step.executorRunMillis / 1000.0);
+        stepGauge(out, "nba_step_input_bytes", "Bytes read from input files per step", step -> step.inputBytes);
+        stepGauge(out, "nba_step_shuffle_read_bytes", "Shuffle bytes read per step", step -> step.shuffleReadBytes);
+        stepGauge(out, "nba_step_shuffle_write_bytes", "Shuffle bytes written per step", step -> step.shuffleWriteBytes);
+        stepGauge(out, "nba_step_memory_spill_bytes", "Bytes spilled from memory per step", step -> step.memorySpillBytes);
+        stepGauge(out, "nba_step_disk_spill_bytes", "Bytes spilled to disk per step", step -> step.diskSpillBytes);
+
+        gauge(out, "nba_operator_rows_out", "Rows out of each plan operator");
+        for (Step step : steps.values()) {
+            for (Operator operator : step.operators) {
+                out.append("nba_operator_rows_out").append(operatorLabels(step, operator)).append(' ').append(operator.rowsOut).append('\n');
+            }
+        }
+        gauge(out, "nba_operator_rows_in", "Rows into each plan operator, where its inputs count rows");
+        for (Step step : steps.values()) {
+            for (Operator operator : step.operators) {
+                if (operator.rowsIn != null) {
+                    out.append("nba_operator_rows_in").append(operatorLabels(step, operator)).append(' ').append(operator.rowsIn).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private interface StepValue {
+        double get(Step step);
+    }
+
+    private void stepGauge(StringBuilder out, String name, String help, StepValue value) {
+        gauge(out, name, help);
+        for (Step step : steps.values()) {
+            out.append(name).append("{step=\"").append(escape(step.name)).append("\"} ").append(value.get(step)).append('\n');
+        }
+    }
+
+    private static void gauge(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static String operatorLabels(Step step, Operator operator) {
+        return "{step=\"" + escape(step.name) + "\",query=\"" + operator.executionId + "\",node=\"" + operator.nodeId
+                + "\",operator=\"" + escape(operator.name) + "\"}";
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Step {
+        final String name;
+        long wallNanos;
+        long scannedRows;
+        long rowsIn;
+        long rowsOut = -1;
+        final List<Operator> operators = new ArrayList<>();
+        // Updated by the listener
+        int jobs;
+        final Set<Integer> stages = new HashSet<>();
+        long tasks;
+        long executorRunMillis;
+        long inputRecords;
+        long inputBytes;
+        long shuffleReadRecords;
+        long shuffleReadBytes;
+        long shuffleWriteRecords;
+        long shuffleWriteBytes;
+        long memorySpillBytes;
+        long diskSpillBytes;
+
+        Step(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(int stageId, TaskMetrics metrics) {
+            stages.add(stageId);
+            tasks++;
+            executorRunMillis += metrics.executorRunTime();
+            inputRecords += metrics.inputMetrics().recordsRead();
+            inputBytes += metrics.inputMetrics().bytesRead();
+            shuffleReadRecords += metrics.shuffleReadMetrics().recordsRead();
+            shuffleReadBytes += metrics.shuffleReadMetrics().totalBytesRead();
+            shuffleWriteRecords += metrics.shuffleWriteMetrics().recordsWritten();
+            shuffleWriteBytes += metrics.shuffleWriteMetrics().bytesWritten();
+            memorySpillBytes += metrics.memoryBytesSpilled();
+            diskSpillBytes += metrics.diskBytesSpilled();
+        }
+    }
+
+    private static final class Operator {
+        final long executionId;
+        final long nodeId;
+        final String name;
+        final String description;
+        final Long rowsIn;
+        final long rowsOut;
+
+        Operator(long executionId, long nodeId, String name, String description, Long rowsIn, long rowsOut) {
+            this.executionId = executionId;
+            this.nodeId = nodeId;
+            this.name = name;
+            this.description = description;
+            this.rowsIn = rowsIn;
+            this.rowsOut = rowsOut;
+        }
+    }
+
+    // Maps every stage and SQL query to the step that started its job, and adds task metrics to that step
+    private final class StepListener extends SparkListener {
+        @Override
+        public void onJobStart(SparkListenerJobStart jobStart) {
+            Properties properties = jobStart.properties();
+            String name = properties == null ? null : properties.getProperty(STEP_PROPERTY);
+            if (name == null) {
+                return;
+            }
+            Step step = steps.get(name);
+            if (step == null) {
+                return;
+            }
+            synchronized (step) {
+                step.jobs++;
+            }
+            for (Object stageId : JavaConverters.seqAsJavaList(jobStart.stageIds())) {
+                stageSteps.put((Integer) stageId, name);
+            }
+            String executionId = properties.getProperty(EXECUTION_ID_PROPERTY);
+            if (executionId != null) {
+                executionSteps.put(Long.parseLong(executionId), name);
+            }
+        }
+
+        @Override
+        public void onTaskEnd(SparkListenerTaskEnd taskEnd) {
+            String name = stageSteps.get(taskEnd.stageId());
+            Step step = name == null ? null : steps.get(name);
+            if (step != null && taskEnd.taskMetrics() != null) {
+                step.add(taskEnd.stageId(), taskEnd.taskMetrics());
+            }
+        }
+    }
+}
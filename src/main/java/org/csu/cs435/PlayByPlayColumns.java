@@ -0,0 +1,61 @@
+package org.csu.cs435;
+
+import java.util.Arrays;
+
+// Column arrays for the play-by-play fields the clutch calculation needs, used by the local engine.
+// Ints use NULL for missing values, the clock is already decoded to seconds remaining and the event type, action
+// type, descriptions and names to the PlayEvent EVENT_CODES mask, next to the DescriptionTokens mask it came from.
+// The description arrays are null unless the reader was asked to keep the strings.
+final class PlayByPlayColumns {
+
+    static final int NULL = Integer.MIN_VALUE;
+
+    int size;
+    int[] gameId = new int[1024];
+    int[] eventNum = new int[1024];
+    int[] period = new int[1024];
+    int[] eventCodes = new int[1024];
+    int[] descriptionTokens = new int[1024];
+    int[] secondsRemaining = new int[1024];
+    int[] scoreMargin = new int[1024];
+    int[] weekOfSeason = new int[1024];
+    int[][] playerIds = {new int[1024], new int[1024], new int[1024]};
+    String[][] playerNames = {new String[1024], new String[1024], new String[1024]};
+    String[] homeDescription;
+    String[] visitorDescription;
+
+    PlayByPlayColumns(boolean keepDescriptions) {
+        if (keepDescriptions) {
+            homeDescription = new String[1024];
+            visitorDescription = new String[1024];
+        }
+    }
+
+    // Grows the arrays if needed and returns the index of the new row
+    int addRow() {
+        if (size == gameId.length) {
+            int capacity = size * 2;
+            gameId = Arrays.copyOf(gameId, capacity);
+            eventNum = Arrays.copyOf(eventNum, capacity);
+            period = Arrays.copyOf(period, capacity);
+            eventCodes = Arrays.copyOf(eventCodes, capacity);
+            descriptionTokens = Arrays.copyOf(descriptionTokens, capacity);
+            secondsRemaining = Arrays.copyOf(secondsRemaining, capacity);
+            scoreMargin = Arrays.copyOf(scoreMargin, capacity);
+            weekOfSeason = Arrays.copyOf(weekOfSeason, capacity);
+            if (homeDescription != null) {
+                homeDescription = Arrays.copyOf(homeDescription, capacity);
+                visitorDescription = Arrays.copyOf(visitorDescription, capacity);
+            }
+            for (int slot = 0; slot < 3; slot++) {
+                playerIds[slot] = Arrays.copyOf(playerIds[slot], capacity);
+                playerNames[slot] = Arrays.copyOf(playerNames[slot], capacity);
+            }
+        }
+        return size++;
+    }
+
+    static Integer boxed(int value) {
+        return value == NULL ? null : value;
+    }
+}
@@ -0,0 +1,396 @@
+package org.csu.cs435;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// Writes fake but realistic play-by-play CSVs (same 35 columns and description formats as the real files)
+// so we can try the job at any volume. Output only depends on the seed and the options, so two runs with the
+// same arguments write identical files. One file per season, pbp_<season>.csv.
+//   PlayByPlayGenerator <output dir> [--games=1230] [--first-season=2019] [--seasons=1] [--seed=435]
+// Each season is mostly regular season games (WEEK_OF_SEASON 1-24, GAME_ID 2yyNNNNN) followed by playoff
+// (weeks 25-30) and finals (weeks 31-33) games with GAME_ID 4yyNNNNN.
+public final class PlayByPlayGenerator {
+
+    private static final String[][] TEAMS = {
+            {"Atlanta", "Hawks", "ATL"}, {"Boston", "Celtics", "BOS"}, {"Brooklyn", "Nets", "BKN"},
+            {"Charlotte", "Hornets", "CHA"}, {"Chicago", "Bulls", "CHI"}, {"Cleveland", "Cavaliers", "CLE"},
+            {"Dallas", "Mavericks", "DAL"}, {"Denver", "Nuggets", "DEN"}, {"Detroit", "Pistons", "DET"},
+            {"Golden State", "Warriors", "GSW"}, {"Houston", "Rockets", "HOU"}, {"Indiana", "Pacers", "IND"},
+            {"LA", "Clippers", "LAC"}, {"Los Angeles", "Lakers", "LAL"}, {"Memphis", "Grizzlies", "MEM"},
+            {"Miami", "Heat", "MIA"}, {"Milwaukee", "Bucks", "MIL"}, {"Minnesota", "Timberwolves", "MIN"},
+            {"New Orleans", "Pelicans", "NOP"}, {"New York", "Knicks", "NYK"}, {"Oklahoma City", "Thunder", "OKC"},
+            {"Orlando", "Magic", "ORL"}, {"Philadelphia", "76ers", "PHI"}, {"Phoenix", "Suns", "PHX"},
+            {"Portland", "Trail Blazers", "POR"}, {"Sacramento", "Kings", "SAC"}, {"San Antonio", "Spurs", "SAS"},
+            {"Toronto", "Raptors", "TOR"}, {"Utah", "Jazz", "UTA"}, {"Washington", "Wizards", "WAS"}
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "John", "Karl", "Larry", "Michael", "Scottie", "Reggie", "Robert", "Kevin", "Dennis", "Danny",
+            "Jeff", "Bryon", "Tim", "Shaquille", "Hakeem", "Patrick", "Charles", "David", "Gary", "Chris"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Stockton", "Malone", "Bird", "Jordan", "Pippen", "Miller", "Parish", "McHale", "Johnson", "Ainge",
+            "Hornacek", "Russell", "Duncan", "O'Neal", "Olajuwon", "Ewing", "Barkley", "Robinson", "Payton",
+            "Mullin", "Webber", "Hardaway", "Mourning", "Kemp", "Drexler", "Rodman", "Worthy", "Thomas",
+            "Dumars", "Wilkins", "Hill", "Mutombo", "Richmond", "Price", "Daugherty", "Porter", "Kersey"
+    };
+
+    private static final String[] REFEREES = {"J.Crawford", "B.Savant", "D.Crawford", "S.Javie", "K.Fitzgerald"};
+
+    static final int ROSTER_SIZE = 12;
+    private static final int FIRST_TEAM_ID = 1610612737;
+    private static final int FIRST_PLAYER_ID = 1000;
+    private static final int[] NO_PLAYERS = {-1, -1, -1};
+
+    private PlayByPlayGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        JobOptions options = JobOptions.parse(args);
+        Path dir = Paths.get(options.inputPath());
+        long rows = write(dir, options.getInt("first-season", 2019), options.getInt("seasons", 1),
+                options.getInt("games", 1230), options.getInt("seed", 435));
+        System.out.println("Wrote " + rows + " play-by-play rows to " + dir);
+    }
+
+    // Returns the number of event rows written (not counting headers)
+    public static long write(Path dir, int firstSeason, int seasons, int gamesPerSeason, long seed) throws IOException {
+        if (gamesPerSeason < 1 || seasons < 1) {
+            throw new IllegalArgumentException("Need at least one season and one game per season");
+        }
+        Files.createDirectories(dir);
+        long rows = 0;
+        for (int season = firstSeason; season < firstSeason + seasons; season++) {
+            // Seeded per season so a season's file doesn't change when the season range does
+            Random random = new Random(seed * 31 + season);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("pbp_" + season + ".csv"), StandardCharsets.UTF_8))) {
+                out.println(String.join(",", PlayByPlaySchema.SCHEMA.fieldNames()));
+                rows += writeSeason(out, random, season, gamesPerSeason);
+            }
+        }
+        return rows;
+    }
+
+    private static long writeSeason(PrintWriter out, Random random, int season, int games) {
+        int playoffGames = games / 15;
+        int finalsGames = Math.min(playoffGames, 6);
+        int regularGames = games - playoffGames;
+        long rows = 0;
+        for (int game = 0; game < games; game++) {
+            boolean regular = game < regularGames;
+            int weekOfSeason;
+            int gameId;
+            if (regular) {
+                weekOfSeason = 1 + game * 24 / regularGames;
+                gameId = 20000000 + (season % 100) * 100000 + game + 1;
+            } else {
+                int playoffGame = game - regularGames;
+                boolean finals = playoffGame >= playoffGames - finalsGames;
+                weekOfSeason = finals
+                        ? 31 + (playoffGame - (playoffGames - finalsGames)) * 3 / finalsGames
+                        : 25 + playoffGame * 6 / Math.max(1, playoffGames - finalsGames);
+                gameId = 40000000 + (season % 100) * 100000 + playoffGame + 1;
+            }
+            int home = random.nextInt(TEAMS.length);
+            int away = (home + 1 + random.nextInt(TEAMS.length - 1)) % TEAMS.length;
+            rows += new Game(out, random, gameId, weekOfSeason, home, away).play();
+        }
+        return rows;
+    }
+
+    static int playerId(int team, int rosterSlot) {
+        return FIRST_PLAYER_ID + team * ROSTER_SIZE + rosterSlot;
+    }
+
+    static String playerName(int team, int rosterSlot) {
+        int player = team * ROSTER_SIZE + rosterSlot;
+        return FIRST_NAMES[player % FIRST_NAMES.length] + " " + LAST_NAMES[player % LAST_NAMES.length];
+    }
+
+    private static String lastName(int team, int rosterSlot) {
+        return LAST_NAMES[(team * ROSTER_SIZE + rosterSlot) % LAST_NAMES.length];
+    }
+
+    // One simulated game. Possessions alternate until the clock runs out, with the rough event mix of a real
+    // game: ~half the shots made, a third of them threes, turnovers (half with a steal), shooting fouls with
+    // free throws, blocks, offensive rebounds, subs and timeouts. Both teams score at the same rate, so plenty
+    // of games are within 6 points in the last 5 minutes.
+    private static final class Game {
+        private final PrintWriter out;
+        private final Random random;
+        private final int gameId;
+        private final int weekOfSeason;
+        private final int[] teams;
+        private final int[] score = new int[2];
+        private final int[][] onCourt = new int[2][5];
+        private final int[][] points = new int[2][ROSTER_SIZE];
+        private final int[][] assists = new int[2][ROSTER_SIZE];
+        private final int[][] steals = new int[2][ROSTER_SIZE];
+        private final int[][] blocks = new int[2][ROSTER_SIZE];
+        private final int[][] offensiveRebounds = new int[2][ROSTER_SIZE];
+        private final int[][] defensiveRebounds = new int[2][ROSTER_SIZE];
+        private final int[][] turnovers = new int[2][ROSTER_SIZE];
+        private final int[][] fouls = new int[2][ROSTER_SIZE];
+        private final int[] teamTurnovers = new int[2];
+        private final int[] teamFouls = new int[2];
+        private int eventNum;
+        private int period;
+        private int clock;
+        private long rows;
+
+        Game(PrintWriter out, Random random, int gameId, int weekOfSeason, int home, int away) {
+            this.out = out;
+            this.random = random;
+            this.gameId = gameId;
+            this.weekOfSeason = weekOfSeason;
+            // index 0 is the home team, 1 the visitors
+            this.teams = new int[]{home, away};
+            for (int side = 0; side < 2; side++) {
+                for (int i = 0; i < 5; i++) {
+                    onCourt[side][i] = i;
+                }
+            }
+        }
+
+        long play() {
+            int offense = random.nextInt(2);
+            for (period = 1; period <= 4 || (score[0] == score[1] && period <= 7); period++) {
+                clock = period <= 4 ? 720 : 300;
+                Arrays.fill(teamFouls, 0);
+                event(12, 0, null, null, null, NO_PLAYERS, new int[3]);
+                while (true) {
+                    int elapsed = 4 + random.nextInt(20);
+                    if (clock - elapsed <= 0) {
+                        break;
+                    }
+                    clock -= elapsed;
+                    if (random.nextInt(100) < 8) {
+                        substitution(random.nextInt(2));
+                    }
+                    if (random.nextInt(100) < 3) {
+                        timeout(random.nextInt(2));
+                    }
+                    offense = possession(offense);
+                }
+                clock = 0;
+                event(13, 0, null, null, null, NO_PLAYERS, new int[3]);
+            }
+            return rows;
+        }
+
+        // Plays one possession and returns which side has the ball next
+        private int possession(int offense) {
+            int defense = 1 - offense;
+            int shooter = onCourt[offense][random.nextInt(5)];
+            int roll = random.nextInt(100);
+
+            if (roll < 13) {
+                turnovers[offense][shooter]++;
+                teamTurnovers[offense]++;
+                String turnover = "(P" + turnovers[offense][shooter] + ".T" + teamTurnovers[offense] + ")";
+                if (random.nextBoolean()) {
+                    int stealer = onCourt[defense][random.nextInt(5)];
+                    steals[defense][stealer]++;
+                    boolean badPass = random.nextBoolean();
+                    event(5, badPass ? 1 : 2, offense,
+                            lastName(teams[offense], shooter) + (badPass ? " Bad Pass Turnover " : " Lost Ball Turnover ") + turnover,
+                            lastName(teams[defense], stealer) + " STEAL (" + steals[defense][stealer] + " STL)",
+                            new int[]{offense, defense, -1}, new int[]{shooter, stealer, 0});
+                } else {
+                    event(5, 4, offense, lastName(teams[offense], shooter) + " Traveling Turnover " + turnover, null,
+                            new int[]{offense, -1, -1}, new int[]{shooter, 0, 0});
+                }
+                return defense;
+            }
+
+            if (roll < 21) {
+                // Shooting foul, two free throws
+                int fouler = onCourt[defense][random.nextInt(5)];
+                fouls[defense][fouler]++;
+                teamFouls[defense]++;
+                event(6, 2, defense, lastName(teams[defense], fouler) + " S.FOUL (P" + fouls[defense][fouler] + ".T"
+                                + teamFouls[defense] + ") (" + REFEREES[random.nextInt(REFEREES.length)] + ")", null,
+                        new int[]{defense, offense, -1}, new int[]{fouler, shooter, 0});
+                boolean made = false;
+                for (int shot = 1; shot <= 2; shot++) {
+                    made = random.nextInt(100) < 76;
+                    String name = lastName(teams[offense], shooter);
+                    if (made) {
+                        points[offense][shooter]++;
+                        score[offense]++;
+                        event(3, 10 + shot, offense, name + " Free Throw " + shot + " of 2 (" + points[offense][shooter] + " PTS)",
+                                null, new int[]{offense, -1, -1}, new int[]{shooter, 0, 0});
+                    } else {
+                        event(3, 10 + shot, offense, "MISS " + name + " Free Throw " + shot + " of 2", null,
+                                new int[]{offense, -1, -1}, new int[]{shooter, 0, 0});
+                    }
+                }
+                return made ? defense : rebound(offense);
+            }
+
+            boolean three = random.nextInt(100) < 35;
+            boolean made = random.nextInt(100) < (three ? 36 : 51);
+            int distance = three ? 23 + random.nextInt(6) : 1 + random.nextInt(20);
+            int actionType = three ? (random.nextBoolean() ? 1 : 79) : distance <= 3 ? (random.nextBoolean() ? 5 : 7) : 1;
+            String shot = three ? (actionType == 79 ? "3PT Pullup Jump Shot" : "3PT Jump Shot")
+                    : actionType == 5 ? "Layup" : actionType == 7 ? "Dunk" : "Jump Shot";
+            String name = lastName(teams[offense], shooter);
+
+            if (made) {
+                points[offense][shooter] += three ? 3 : 2;
+                score[offense] += three ? 3 : 2;
+                String description = name + " " + distance + "' " + shot + " (" + points[offense][shooter] + " PTS)";
+                if (random.nextInt(100) < 60) {
+                    int assister = onCourt[offense][(indexOnCourt(offense, shooter) + 1 + random.nextInt(4)) % 5];
+                    assists[offense][assister]++;
+                    description += " (" + lastName(teams[offense], assister) + " " + assists[offense][assister] + " AST)";
+                    event(1, actionType, offense, description, null,
+                            new int[]{offense, offense, -1}, new int[]{shooter, assister, 0});
+                } else {
+                    event(1, actionType, offense, description, null,
+                            new int[]{offense, -1, -1}, new int[]{shooter, 0, 0});
+                }
+                return defense;
+            }
+
+            String description = "MISS " + name + " " + distance + "' " + shot;
+            if (!three && random.nextInt(100) < 12) {
+                int blocker = onCourt[defense][random.nextInt(5)];
+                blocks[defense][blocker]++;
+                event(2, actionType, offense, description,
+                        lastName(teams[defense], blocker) + " BLOCK (" + blocks[defense][blocker] + " BLK)",
+                        new int[]{offense, -1, defense}, new int[]{shooter, 0, blocker});
+            } else {
+                event(2, actionType, offense, description, null, new int[]{offense, -1, -1}, new int[]{shooter, 0, 0});
+            }
+            return rebound(offense);
+        }
+
+        // Rebound after a miss, returns who has the ball
+        private int rebound(int offense) {
+            int side = random.nextInt(100) < 27 ? offense : 1 - offense;
+            if (random.nextInt(100) < 8) {
+                event(4, 0, side, TEAMS[teams[side]][1] + " Rebound", null, NO_PLAYERS, new int[3]);
+                return side;
+            }
+            int rebounder = onCourt[side][random.nextInt(5)];
+            if (side == offense) {
+                offensiveRebounds[side][rebounder]++;
+            } else {
+                defensiveRebounds[side][rebounder]++;
+            }
+            event(4, 0, side, lastName(teams[side], rebounder) + " REBOUND (Off:" + offensiveRebounds[side][rebounder]
+                            + " Def:" + defensiveRebounds[side][rebounder] + ")", null,
+                    new int[]{side, -1, -1}, new int[]{rebounder, 0, 0});
+            return side;
+        }
+
+        private void substitution(int side) {
+            int courtSlot = random.nextInt(5);
+            int out = onCourt[side][courtSlot];
+            int in;
+            do {
+                in = random.nextInt(ROSTER_SIZE);
+            } while (indexOnCourt(side, in) >= 0);
+            onCourt[side][courtSlot] = in;
+            event(8, 0, side, "SUB: " + lastName(teams[side], in) + " FOR " + lastName(teams[side], out), null,
+                    new int[]{side, side, -1}, new int[]{out, in, 0});
+        }
+
+        private void timeout(int side) {
+            event(9, 1, side, TEAMS[teams[side]][1] + " Timeout: Regular (Full " + (1 + random.nextInt(4)) + " Short 0)",
+                    null, NO_PLAYERS, new int[3]);
+        }
+
+        private int indexOnCourt(int side, int rosterSlot) {
+            for (int i = 0; i < 5; i++) {
+                if (onCourt[side][i] == rosterSlot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // side is whose description `description` is (0 home, 1 visitor), `other` goes to the other side.
+        // playerSides/playerSlots describe PLAYER1..3, side -1 means no player. Scoring events get SCORE and
+        // SCOREMARGIN (home minus visitor, TIE when level), everything else leaves them blank like the real files.
+        private void event(int eventMsgType, int eventMsgActionType, Integer side, String description, String other,
+                           int[] playerSides, int[] playerSlots) {
+            eventNum += random.nextInt(10) == 0 ? 2 : 1;
+            String home = side == null ? null : side == 0 ? description : other;
+            String visitor = side == null ? null : side == 0 ? other : description;
+            boolean scored = eventMsgType == 1 || (eventMsgType == 3 && !description.startsWith("MISS"));
+            int margin = score[0] - score[1];
+
+            StringBuilder line = new StringBuilder(256);
+            line.append(gameId).append(',').append(eventNum).append(',').append(eventMsgType).append(',')
+                    .append(eventMsgActionType).append(',').append(period).append(',')
+                    .append(wallClock()).append(',')
+                    .append(clock / 60).append(':').append(clock % 60 < 10 ? "0" : "").append(clock % 60).append(',')
+                    .append(quote(home)).append(',')
+                    .append(quote(neutralDescription(eventMsgType))).append(',')
+                    .append(quote(visitor)).append(',')
+                    .append(scored ? score[1] + " - " + score[0] : "").append(',')
+                    .append(scored ? (margin == 0 ? "TIE" : Integer.toString(margin)) : "");
+            for (int p = 0; p < 3; p++) {
+                int playerSide = playerSides[p];
+                if (playerSide < 0) {
+                    line.append(",0,,,,,,");
+                    continue;
+                }
+                int team = teams[playerSide];
+                line.append(',').append(playerSide == 0 ? 4 : 5)
+                        .append(',').append(playerId(team, playerSlots[p]))
+                        .append(',').append(playerName(team, playerSlots[p]))
+                        .append(',').append(FIRST_TEAM_ID + team)
+                        .append(',').append(TEAMS[team][0])
+                        .append(',').append(TEAMS[team][1])
+                        .append(',').append(TEAMS[team][2]);
+            }
+            line.append(",1,").append(weekOfSeason);
+            out.println(line);
+            rows++;
+        }
+
+        private String neutralDescription(int eventMsgType) {
+            if (eventMsgType == 12) {
+                return "Start of " + periodName() + " (" + wallClock() + " EST)";
+            }
+            if (eventMsgType == 13) {
+                return "End of " + periodName() + " (" + wallClock() + " EST)";
+            }
+            return null;
+        }
+
+        private String periodName() {
+            if (period > 4) {
+                return (period - 4) + (period == 5 ? "st" : period == 6 ? "nd" : "rd") + " OT";
+            }
+            return period + (period == 1 ? "st" : period == 2 ? "nd" : period == 3 ? "rd" : "th") + " Period";
+        }
+
+        // Roughly 30 real minutes per period starting at 7:30 PM
+        private String wallClock() {
+            int periodLength = period <= 4 ? 720 : 300;
+            int minutes = 30 + (Math.min(period, 4) - 1) * 30 + (period > 4 ? (period - 4) * 15 : 0)
+                    + (periodLength - clock) * 25 / periodLength;
+            int hour = 7 + minutes / 60;
+            int minute = minutes % 60;
+            return hour + ":" + (minute < 10 ? "0" : "") + minute + " PM";
+        }
+
+        private static String quote(String value) {
+            if (value == null) {
+                return "";
+            }
+            return value.indexOf(',') >= 0 || value.indexOf('"') >= 0 ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+        }
+    }
+}
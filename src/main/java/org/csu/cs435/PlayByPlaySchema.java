@@ -0,0 +1,75 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+
+import static org.apache.spark.sql.functions.*;
+
+// Fixed schema for the play-by-play CSVs so we don't have to pay for inferSchema on every run.
+// Types match what inferSchema picks on the real files (PCTIMESTRING and SCOREMARGIN stay strings).
+// Spark applies a given schema to the CSV columns by position. The readers set enforceSchema=false so Spark
+// checks every file's header against these names (for the columns a query reads) and fails on a file with its
+// columns in another order instead of reading them into the wrong fields (MappedCsvReader goes by the header names).
+public final class PlayByPlaySchema {
+
+    public static final StructType SCHEMA = new StructType()
+            .add("GAME_ID", DataTypes.IntegerType)
+            .add("EVENTNUM", DataTypes.IntegerType)
+            .add("EVENTMSGTYPE", DataTypes.IntegerType)
+            .add("EVENTMSGACTIONTYPE", DataTypes.IntegerType)
+            .add("PERIOD", DataTypes.IntegerType)
+            .add("WCTIMESTRING", DataTypes.StringType)
+            .add("PCTIMESTRING", DataTypes.StringType)
+            .add("HOMEDESCRIPTION", DataTypes.StringType)
+            .add("NEUTRALDESCRIPTION", DataTypes.StringType)
+            .add("VISITORDESCRIPTION", DataTypes.StringType)
+            .add("SCORE", DataTypes.StringType)
+            .add("SCOREMARGIN", DataTypes.StringType)
+            .add("PERSON1TYPE", DataTypes.IntegerType)
+            .add("PLAYER1_ID", DataTypes.IntegerType)
+            .add("PLAYER1_NAME", DataTypes.StringType)
+            .add("PLAYER1_TEAM_ID", DataTypes.IntegerType)
+            .add("PLAYER1_TEAM_CITY", DataTypes.StringType)
+            .add("PLAYER1_TEAM_NICKNAME", DataTypes.StringType)
+            .add("PLAYER1_TEAM_ABBREVIATION", DataTypes.StringType)
+            .add("PERSON2TYPE", DataTypes.IntegerType)
+            .add("PLAYER2_ID", DataTypes.IntegerType)
+            .add("PLAYER2_NAME", DataTypes.StringType)
+            .add("PLAYER2_TEAM_ID", DataTypes.IntegerType)
+            .add("PLAYER2_TEAM_CITY", DataTypes.StringType)
+            .add("PLAYER2_TEAM_NICKNAME", DataTypes.StringType)
+            .add("PLAYER2_TEAM_ABBREVIATION", DataTypes.StringType)
+            .add("PERSON3TYPE", DataTypes.IntegerType)
+            .add("PLAYER3_ID", DataTypes.IntegerType)
+            .add("PLAYER3_NAME", DataTypes.StringType)
+            .add("PLAYER3_TEAM_ID", DataTypes.IntegerType)
+            .add("PLAYER3_TEAM_CITY", DataTypes.StringType)
+            .add("PLAYER3_TEAM_NICKNAME", DataTypes.StringType)
+            .add("PLAYER3_TEAM_ABBREVIATION", DataTypes.StringType)
+            .add("VIDEO_AVAILABLE_FLAG", DataTypes.IntegerType)
+            .add("WEEK_OF_SEASON", DataTypes.IntegerType);
+
+    // The only columns preprocessData and calculateClutchness actually look at
+    public static final String[] PIPELINE_COLUMNS = {
+            "GAME_ID", "EVENTNUM", "EVENTMSGTYPE", "EVENTMSGACTIONTYPE", "PERIOD", "PCTIMESTRING",
+            "HOMEDESCRIPTION", "VISITORDESCRIPTION", "SCOREMARGIN",
+            "PLAYER1_ID", "PLAYER1_NAME", "PLAYER2_ID", "PLAYER2_NAME", "PLAYER3_ID", "PLAYER3_NAME",
+            "WEEK_OF_SEASON", "SEASON"
+    };
+
+    private PlayByPlaySchema() {
+    }
+
+    // GAME_ID looks like 00SYYGGGGG (S = season type, YY = season start year), the leading zeros get lost as an int
+    public static Column season(Column gameId) {
+        Column yy = pmod(gameId.divide(100000).cast(DataTypes.IntegerType), lit(100));
+        return when(yy.geq(46), yy.plus(1900)).otherwise(yy.plus(2000));
+    }
+
+    // Same for one GAME_ID on the driver
+    public static int season(int gameId) {
+        int yy = gameId / 100000 % 100;
+        return yy >= 46 ? 1900 + yy : 2000 + yy;
+    }
+}
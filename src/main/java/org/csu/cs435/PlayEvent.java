@@ -0,0 +1,253 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.expressions.objects.StaticInvoke;
+import org.apache.spark.sql.types.AbstractDataType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.unsafe.Platform;
+import org.apache.spark.unsafe.types.UTF8String;
+import scala.collection.JavaConverters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.spark.sql.functions.*;
+
+// Compact typed form of one play-by-play row, the only thing the pipeline carries past the read.
+// Only the columns the pipeline uses, with the narrowest types that hold them: byte period, short clock, int margin
+// and player IDs, EVENT_CODES, the row's events as a bitmask over EventCode values, and DESCRIPTION_TOKENS, the
+// DescriptionTokens mask the codes came from, kept so later stages and ad-hoc queries can filter on tokens with
+// DescriptionTokens.has. Built with plain Catalyst expressions plus StaticInvokes that parse the clock and scan the
+// descriptions straight off the UTF-8 bytes, so nothing goes through a UDF or a java String. The description strings
+// are gone after the scan; decode(raw, true) keeps them as HOMEDESCRIPTION and VISITORDESCRIPTION for looking at the
+// events (--keep-descriptions).
+//
+// EVENT_CODES has bit 1 << code set for every code classifyEvent would produce from the row, except the parts that
+// need the margin: a missed shot is set as the plain miss, a made shot in the last 10 seconds as the Last 10 Seconds
+// code, and clutchCodes upgrades them once the margin is filled. HOME_DESCRIPTION records the side the made shot
+// clutch check needs. A row with nothing else is OTHER, so the mask is never 0.
+//
+// Values are what the old decode produced: SECONDS_REMAINING is M * 60 + SS of PCTIMESTRING "M:SS"
+// (-1 when it doesn't parse), SCOREMARGIN "TIE" is 0, a missing description counts as an empty one.
+public final class PlayEvent {
+
+    public static final int HOME_DESCRIPTION = 1 << 30;
+
+    public static final StructType SCHEMA = new StructType()
+            .add("GAME_ID", DataTypes.IntegerType)
+            .add("EVENTNUM", DataTypes.IntegerType)
+            .add("PERIOD", DataTypes.ByteType)
+            .add("SECONDS_REMAINING", DataTypes.ShortType, false)
+            .add("SCOREMARGIN", DataTypes.IntegerType)
+            .add("EVENT_CODES", DataTypes.IntegerType, false)
+            .add("DESCRIPTION_TOKENS", DataTypes.IntegerType, false)
+            .add("SEASON_TYPE", DataTypes.StringType, false)
+            .add("PLAYER1_ID", DataTypes.IntegerType)
+            .add("PLAYER1_NAME", DataTypes.StringType)
+            .add("PLAYER2_ID", DataTypes.IntegerType)
+            .add("PLAYER2_NAME", DataTypes.StringType)
+            .add("PLAYER3_ID", DataTypes.IntegerType)
+            .add("PLAYER3_NAME", DataTypes.StringType);
+
+    private PlayEvent() {
+    }
+
+    // Raw play-by-play rows (CSV, cache or stream) to SCHEMA, 4th quarter and overtime only
+    public static Dataset<Row> decode(Dataset<Row> raw) {
+        return decode(raw, false);
+    }
+
+    // Same, plus the two description strings at the end when keepDescriptions is set
+    public static Dataset<Row> decode(Dataset<Row> raw, boolean keepDescriptions) {
+        Column home = coalesce(raw.col("HOMEDESCRIPTION"), lit(""));
+        Column visitor = coalesce(raw.col("VISITORDESCRIPTION"), lit(""));
+        Column seconds = secondsRemaining(raw.col("PCTIMESTRING"), raw.schema().apply("PCTIMESTRING").dataType());
+        Column anyPlayer = raw.col("PLAYER1_NAME").isNotNull().or(raw.col("PLAYER2_NAME").isNotNull())
+                .or(raw.col("PLAYER3_NAME").isNotNull());
+        // Used twice below, subexpression elimination scans the descriptions once per row
+        Column tokens = DescriptionTokens.column(home, visitor);
+        Column eventCodes = new Column(new StaticInvoke(PlayEvent.class, DataTypes.IntegerType, "eventCodesOf",
+                JavaConverters.asScalaBuffer(Arrays.asList(tokens.expr(),
+                        raw.col("EVENTMSGTYPE").isNotNull().expr(), raw.col("EVENTMSGACTIONTYPE").isNotNull().expr(),
+                        seconds.expr(), anyPlayer.expr())).toSeq(),
+                JavaConverters.asScalaBuffer(Arrays.<AbstractDataType>asList(DataTypes.IntegerType,
+                        DataTypes.BooleanType, DataTypes.BooleanType, DataTypes.ShortType, DataTypes.BooleanType)).toSeq(),
+                false, false));
+
+        List<Column> columns = new ArrayList<>(Arrays.asList(
+                raw.col("GAME_ID").cast(DataTypes.IntegerType).alias("GAME_ID"),
+                raw.col("EVENTNUM").cast(DataTypes.IntegerType).alias("EVENTNUM"),
+                raw.col("PERIOD").cast(DataTypes.ByteType).alias("PERIOD"),
+                seconds.alias("SECONDS_REMAINING"),
+                when(raw.col("SCOREMARGIN").equalTo("TIE"), lit(0))
+                        .otherwise(raw.col("SCOREMARGIN").cast(DataTypes.IntegerType)).alias("SCOREMARGIN"),
+                eventCodes.alias("EVENT_CODES"),
+                tokens.alias("DESCRIPTION_TOKENS"),
+                seasonType(raw.col("WEEK_OF_SEASON")).alias("SEASON_TYPE"),
+                raw.col("PLAYER1_ID").cast(DataTypes.IntegerType).alias("PLAYER1_ID"),
+                raw.col("PLAYER1_NAME"),
+                raw.col("PLAYER2_ID").cast(DataTypes.IntegerType).alias("PLAYER2_ID"),
+                raw.col("PLAYER2_NAME"),
+                raw.col("PLAYER3_ID").cast(DataTypes.IntegerType).alias("PLAYER3_ID"),
+                raw.col("PLAYER3_NAME")));
+        if (keepDescriptions) {
+            columns.add(home.alias("HOMEDESCRIPTION"));
+            columns.add(visitor.alias("VISITORDESCRIPTION"));
+        }
+        return raw
+                // Keep only 4th quarter and overtime periods, OT is period 5 so this should work
+                .filter(raw.col("PERIOD").geq(4))
+                .select(columns.toArray(new Column[0]));
+    }
+
+    // The EVENT_CODES mask from a DescriptionTokens mask and the other things classifyEvent looks at before the margin
+    public static int eventCodes(int tokens, boolean hasEventType, boolean hasActionType, int secondsRemaining,
+                                 boolean anyPlayer) {
+        if (!hasEventType) {
+            return bit(EventCode.OTHER);
+        }
+        boolean isLast10Seconds = secondsRemaining <= 10 && secondsRemaining > 0;
+        boolean isMissed = DescriptionTokens.either(tokens, DescriptionTokens.MISS);
+
+        int codes = 0;
+        if (DescriptionTokens.either(tokens, DescriptionTokens.ASSIST)) {
+            codes |= bit(isLast10Seconds ? EventCode.ASSIST_LAST_10 : EventCode.ASSIST);
+        }
+        if (DescriptionTokens.either(tokens, DescriptionTokens.STEAL)) {
+            codes |= bit(isLast10Seconds ? EventCode.STEAL_LAST_10 : EventCode.STEAL);
+        }
+        if (DescriptionTokens.either(tokens, DescriptionTokens.BLOCK)) {
+            codes |= bit(isLast10Seconds ? EventCode.BLOCK_LAST_10 : EventCode.BLOCK);
+        }
+        if (DescriptionTokens.either(tokens, DescriptionTokens.TURNOVER) && anyPlayer) {
+            codes |= bit(isLast10Seconds ? EventCode.TURNOVER_LAST_10 : EventCode.TURNOVER);
+        }
+        if (DescriptionTokens.either(tokens, DescriptionTokens.REBOUND) && anyPlayer) {
+            codes |= bit(isLast10Seconds ? EventCode.REBOUND_LAST_10 : EventCode.REBOUND);
+        }
+        if (hasActionType) {
+            if (DescriptionTokens.either(tokens, DescriptionTokens.THREE_POINTER)) {
+                codes |= isMissed ? bit(EventCode.MISSED_3PT)
+                        : bit(isLast10Seconds ? EventCode.MADE_3PT_LAST_10 : EventCode.MADE_3PT);
+            } else if (DescriptionTokens.twoPointer(tokens)) {
+                codes |= isMissed ? bit(EventCode.MISSED_2PT)
+                        : bit(isLast10Seconds ? EventCode.MADE_2PT_LAST_10 : EventCode.MADE_2PT);
+            }
+        }
+        if (DescriptionTokens.either(tokens, DescriptionTokens.FREE_THROW)) {
+            codes |= isMissed ? bit(isLast10Seconds ? EventCode.MISSED_FT_LAST_10 : EventCode.MISSED_FT)
+                    : bit(isLast10Seconds ? EventCode.MADE_FT_LAST_10 : EventCode.MADE_FT);
+        }
+        if (codes == 0) {
+            return bit(EventCode.OTHER);
+        }
+        return (tokens & DescriptionTokens.HOME_PRESENT) != 0 ? codes | HOME_DESCRIPTION : codes;
+    }
+
+    // Called from generated code by decode
+    public static int eventCodesOf(int tokens, boolean hasEventType, boolean hasActionType, short secondsRemaining,
+                                   boolean anyPlayer) {
+        return eventCodes(tokens, hasEventType, hasActionType, secondsRemaining, anyPlayer);
+    }
+
+    // The final codes (HOME_DESCRIPTION cleared) once the margin is known: shots in the last 10 seconds within
+    // the clutch margin become their Clutch Margin code. Same rules as classifyEvent, EventClassifier.classify
+    // does this as a Spark expression
+    public static int clutchCodes(int eventCodes, int secondsRemaining, int scoreMargin) {
+        int codes = eventCodes & ~HOME_DESCRIPTION;
+        if (secondsRemaining > 10 || secondsRemaining <= 0) {
+            return codes;
+        }
+        int absScoreMargin = Math.abs(scoreMargin);
+        boolean shooterTrailing = (eventCodes & HOME_DESCRIPTION) != 0 ? scoreMargin <= 0 : scoreMargin >= 0;
+        if (absScoreMargin <= 3) {
+            codes = upgrade(codes, EventCode.MISSED_3PT, EventCode.MISSED_3PT_CLUTCH, true);
+            codes = upgrade(codes, EventCode.MADE_3PT_LAST_10, EventCode.MADE_3PT_CLUTCH, shooterTrailing);
+        }
+        if (absScoreMargin <= 2) {
+            codes = upgrade(codes, EventCode.MISSED_2PT, EventCode.MISSED_2PT_CLUTCH, true);
+            codes = upgrade(codes, EventCode.MADE_2PT_LAST_10, EventCode.MADE_2PT_CLUTCH, shooterTrailing);
+        }
+        return codes;
+    }
+
+    private static int upgrade(int codes, int from, int to, boolean condition) {
+        return condition && (codes & bit(from)) != 0 ? codes & ~bit(from) | bit(to) : codes;
+    }
+
+    static int bit(int code) {
+        return 1 << code;
+    }
+
+    private static Column secondsRemaining(Column clock, DataType type) {
+        if (type.equals(DataTypes.TimestampType)) {
+            // Already parsed by inferSchema, hour and minute are the M and SS
+            return coalesce(hour(clock).multiply(60).plus(minute(clock)), lit(-1)).cast(DataTypes.ShortType);
+        }
+        return new Column(new StaticInvoke(PlayEvent.class, DataTypes.ShortType, "clockSeconds",
+                JavaConverters.asScalaBuffer(Collections.singletonList(clock.expr())).toSeq(),
+                JavaConverters.asScalaBuffer(Collections.<AbstractDataType>singletonList(DataTypes.StringType)).toSeq(),
+                false, false));
+    }
+
+    // Apply Season Type based on WEEK_OF_SEASON
+    private static Column seasonType(Column weekOfSeason) {
+        return when(weekOfSeason.geq(1).and(weekOfSeason.leq(24)), "Regular Season")
+                .when(weekOfSeason.geq(25).and(weekOfSeason.leq(30)), "Playoffs")
+                .when(weekOfSeason.geq(31).and(weekOfSeason.leq(33)), "Finals")
+                .otherwise("Unknown");
+    }
+
+    // Called from generated code by decode
+    public static short clockSeconds(UTF8String clock) {
+        return clock == null ? -1 : (short) parseClock(clock.getBaseObject(), clock.getBaseOffset(), clock.numBytes());
+    }
+
+    // "M:SS" (optionally ":SS" seconds and a fraction after it) to M * 60 + SS, -1 if it isn't a clock.
+    // Same as the hour and minute Spark gives for the string as a time of day, so M has to be 0-23 and SS 0-59.
+    // Works on any bytes Platform can read: UTF8String contents or a byte[] at Platform.BYTE_ARRAY_OFFSET.
+    static int parseClock(Object base, long offset, int length) {
+        int colon = indexOf(base, offset, 0, length, ':');
+        if (colon <= 0) {
+            return -1;
+        }
+        int secondColon = indexOf(base, offset, colon + 1, length, ':');
+        int minutes = parseDigits(base, offset, 0, colon);
+        int seconds = parseDigits(base, offset, colon + 1, secondColon < 0 ? length : secondColon);
+        if (minutes < 0 || minutes > 23 || seconds < 0 || seconds > 59) {
+            return -1;
+        }
+        return minutes * 60 + seconds;
+    }
+
+    private static int indexOf(Object base, long offset, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (Platform.getByte(base, offset + i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Non negative number in [from, to), -1 if empty, not all digits or too long to be a clock part
+    private static int parseDigits(Object base, long offset, int from, int to) {
+        if (from >= to || to - from > 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Platform.getByte(base, offset + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,115 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.StructType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.apache.spark.sql.functions.*;
+
+// The per player events (playerData) stored by player so one player's timeline can be read without running
+// the pipeline or scanning everyone. Written with --event-store=<dir>, read by PlayerQuery.
+//   <dir>/events/BUCKET=<n>/  Parquet, rows with PLAYER_ID % buckets == n sorted by PLAYER_ID, GAME_ID, PERIOD, EVENTNUM
+//   <dir>/_players.tsv        name -> ID index: PLAYER_ID, BUCKET, event rows, PLAYER_NAME
+//   <dir>/_schema.json        schema of the event rows, so reads don't have to touch Parquet footers first
+// --event-store-buckets=N picks the bucket count (default 64). A rewrite replaces the whole store.
+public final class PlayerEventStore {
+
+    static final String BUCKET = "BUCKET";
+    private static final String INDEX = "_players.tsv";
+    private static final String SCHEMA = "_schema.json";
+
+    private PlayerEventStore() {
+    }
+
+    public static void write(SparkSession spark, Dataset<Row> playerData, String dir, int buckets) throws IOException {
+        Dataset<Row> events = playerData.filter(col("PLAYER_ID").isNotNull())
+                .withColumn(BUCKET, pmod(col("PLAYER_ID"), lit(buckets)));
+
+        // One task per bucket, already sorted by bucket first so the partitioned writer keeps our order
+        events.repartition(buckets, col(BUCKET))
+                .sortWithinPartitions(BUCKET, "PLAYER_ID", "GAME_ID", "PERIOD", "EVENTNUM")
+                .write()
+                .mode(SaveMode.Overwrite)
+                .partitionBy(BUCKET)
+                .parquet(dir + "/events");
+
+        List<Row> players = events.groupBy("PLAYER_ID", BUCKET)
+                .agg(max("PLAYER_NAME"), count(lit(1)))
+                .orderBy("PLAYER_ID")
+                .collectAsList();
+
+        Path root = new Path(dir);
+        FileSystem fs = root.getFileSystem(spark.sparkContext().hadoopConfiguration());
+        try (FSDataOutputStream out = fs.create(new Path(root, INDEX), true)) {
+            for (Row player : players) {
+                String name = player.isNullAt(2) ? "" : player.getString(2);
+                String line = player.get(0) + "\t" + player.get(1) + "\t" + player.getLong(3) + "\t" + name + "\n";
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        try (FSDataOutputStream out = fs.create(new Path(root, SCHEMA), true)) {
+            out.write(playerData.schema().json().getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println("Wrote event store for " + players.size() + " players to " + dir);
+    }
+
+    // One line of the index
+    static final class Player {
+        final int playerId;
+        final int bucket;
+        final long events;
+        final String name;
+
+        Player(int playerId, int bucket, long events, String name) {
+            this.playerId = playerId;
+            this.bucket = bucket;
+            this.events = events;
+            this.name = name;
+        }
+    }
+
+    static List<Player> readIndex(FileSystem fs, String dir) throws IOException {
+        List<Player> players = new ArrayList<>();
+        try (FSDataInputStream in = fs.open(new Path(dir, INDEX));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    players.add(new Player(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                            Long.parseLong(fields[2]), fields[3]));
+                }
+            }
+        }
+        return players;
+    }
+
+    static StructType readSchema(FileSystem fs, String dir) throws IOException {
+        try (FSDataInputStream in = fs.open(new Path(dir, SCHEMA));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder json = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                json.append(line);
+            }
+            return (StructType) DataType.fromJson(json.toString());
+        }
+    }
+
+    static String bucketPath(String dir, int bucket) {
+        return dir + "/events/" + BUCKET + "=" + bucket;
+    }
+}
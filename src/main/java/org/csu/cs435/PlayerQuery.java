@@ -0,0 +1,209 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Serves one player's clutch event timeline from a PlayerEventStore, reading only that player's bucket.
+// The bucket's Parquet files are read straight with parquet-hadoop, with a PLAYER_ID filter that skips row groups
+// by their statistics, so a lookup starts no SparkSession and runs no job. The first lookup in a process also
+// loads the Parquet and codec classes (about a second), after that a player not in the cache costs one footer
+// and the matching row groups, tens of ms. Recently asked for players are kept in an LRU cache, so repeat
+// lookups don't read anything.
+//   PlayerQuery <store dir> [--player=Name|ID,...] [--cache-size=64] [--limit=100]
+// Without --player it answers one name or ID per line from stdin until EOF.
+public final class PlayerQuery {
+
+    // Shown when the store has them, the descriptions only come with a --keep-descriptions run
+    private static final String[] TIMELINE_COLUMNS = {
+            "GAME_ID", "PERIOD", "EVENTNUM", "SECONDS_REMAINING", "SCOREMARGIN", "SEASON_TYPE", "PLAYER_SLOT",
+            "EVENT_TYPE", "eWPA", "HOMEDESCRIPTION", "VISITORDESCRIPTION"
+    };
+
+    private final Configuration conf;
+    private final String dir;
+    // The TIMELINE_COLUMNS in this store
+    private final StructField[] columns;
+    private final Map<Integer, PlayerEventStore.Player> byId = new HashMap<>();
+    private final Map<String, List<PlayerEventStore.Player>> byName = new HashMap<>();
+    private final Map<Integer, List<Row>> cache;
+
+    public PlayerQuery(Configuration conf, String dir, int cacheSize) throws IOException {
+        this.conf = conf;
+        this.dir = dir;
+        FileSystem fs = new Path(dir).getFileSystem(conf);
+        StructType schema = PlayerEventStore.readSchema(fs, dir);
+        List<StructField> columns = new ArrayList<>();
+        for (String name : TIMELINE_COLUMNS) {
+            if (Arrays.asList(schema.fieldNames()).contains(name)) {
+                columns.add(schema.apply(name));
+            }
+        }
+        this.columns = columns.toArray(new StructField[0]);
+        for (PlayerEventStore.Player player : PlayerEventStore.readIndex(fs, dir)) {
+            byId.put(player.playerId, player);
+            byName.computeIfAbsent(player.name.toLowerCase(Locale.ROOT), name -> new ArrayList<>()).add(player);
+        }
+        // Access ordered LinkedHashMap, drops the least recently used player once it's full
+        this.cache = new LinkedHashMap<Integer, List<Row>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Row>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        JobOptions options = JobOptions.parse(args);
+        PlayerQuery query = new PlayerQuery(new Configuration(), options.inputPath(), options.getInt("cache-size", 64));
+        int limit = options.getInt("limit", 100);
+        if (options.has("player")) {
+            for (String player : options.get("player", null).split(",")) {
+                query.print(player, limit);
+            }
+        } else {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    query.print(line, limit);
+                }
+            }
+        }
+    }
+
+    // Players matching a name (case insensitive, there can be more than one) or a PLAYER_ID
+    public List<PlayerEventStore.Player> find(String nameOrId) {
+        String key = nameOrId.trim();
+        if (key.matches("\\d+")) {
+            PlayerEventStore.Player player = byId.get(Integer.parseInt(key));
+            return player == null ? Collections.emptyList() : Collections.singletonList(player);
+        }
+        return byName.getOrDefault(key.toLowerCase(Locale.ROOT), Collections.emptyList());
+    }
+
+    // Every stored event row for the player in game order, the TIMELINE_COLUMNS the store has
+    public List<Row> timeline(PlayerEventStore.Player player) {
+        List<Row> rows = cache.get(player.playerId);
+        if (rows == null) {
+            try {
+                rows = readBucket(player);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Files are sorted already but a bucket can be written as several files
+            rows.sort(Comparator.<Row>comparingInt(row -> intOrMin(row, 0))
+                    .thenComparingInt(row -> intOrMin(row, 1))
+                    .thenComparingInt(row -> intOrMin(row, 2)));
+            cache.put(player.playerId, rows);
+        }
+        return rows;
+    }
+
+    private List<Row> readBucket(PlayerEventStore.Player player) throws IOException {
+        Path bucket = new Path(PlayerEventStore.bucketPath(dir, player.bucket));
+        FileSystem fs = bucket.getFileSystem(conf);
+        FilterCompat.Filter filter = FilterCompat.get(FilterApi.eq(FilterApi.intColumn("PLAYER_ID"), player.playerId));
+        List<Row> rows = new ArrayList<>();
+        for (FileStatus file : fs.listStatus(bucket, path -> path.getName().endsWith(".parquet"))) {
+            try (ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), file.getPath())
+                    .withConf(conf)
+                    .withFilter(filter)
+                    .build()) {
+                Group group;
+                while ((group = reader.read()) != null) {
+                    rows.add(toRow(group));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Same values Spark would have given for the stored columns
+    private Row toRow(Group group) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String name = columns[i].name();
+            if (group.getFieldRepetitionCount(name) == 0) {
+                continue;
+            }
+            DataType type = columns[i].dataType();
+            if (type.equals(DataTypes.IntegerType)) {
+                values[i] = group.getInteger(name, 0);
+            } else if (type.equals(DataTypes.ShortType)) {
+                values[i] = (short) group.getInteger(name, 0);
+            } else if (type.equals(DataTypes.ByteType)) {
+                values[i] = (byte) group.getInteger(name, 0);
+            } else if (type.equals(DataTypes.LongType)) {
+                values[i] = group.getLong(name, 0);
+            } else if (type.equals(DataTypes.DoubleType)) {
+                values[i] = group.getDouble(name, 0);
+            } else if (type.equals(DataTypes.StringType)) {
+                values[i] = group.getString(name, 0);
+            } else {
+                throw new IllegalStateException("Event store column " + name + " has unsupported type " + type);
+            }
+        }
+        return RowFactory.create(values);
+    }
+
+    private static int intOrMin(Row row, int i) {
+        return row.isNullAt(i) ? Integer.MIN_VALUE : ((Number) row.get(i)).intValue();
+    }
+
+    private void print(String nameOrId, int limit) {
+        List<PlayerEventStore.Player> players = find(nameOrId);
+        if (players.isEmpty()) {
+            System.out.println("No player called " + nameOrId.trim() + " in " + dir);
+            return;
+        }
+        for (PlayerEventStore.Player player : players) {
+            boolean cached = cache.containsKey(player.playerId);
+            long start = System.nanoTime();
+            List<Row> rows = timeline(player);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            double total = 0;
+            int eWPA = Arrays.asList(columnNames()).indexOf("eWPA");
+            List<Object[]> table = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                total += row.getDouble(eWPA);
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = row.get(i);
+                }
+                table.add(values);
+            }
+            System.out.println(player.name + " (" + player.playerId + "): " + rows.size() + " event rows, total eWPA "
+                    + total + ", " + millis + " ms" + (cached ? " (cached)" : ""));
+            TextTable.show(columnNames(), table, limit, false);
+        }
+    }
+
+    private String[] columnNames() {
+        String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].name();
+        }
+        return names;
+    }
+}
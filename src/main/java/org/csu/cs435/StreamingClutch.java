@@ -0,0 +1,176 @@
+package org.csu.cs435;
+
+import org.apache.spark.api.java.function.FlatMapGroupsWithStateFunction;
+import org.apache.spark.api.java.function.MapFunction;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.streaming.GroupStateTimeout;
+import org.apache.spark.sql.streaming.OutputMode;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.StreamingQueryException;
+import org.apache.spark.sql.streaming.Trigger;
+import org.apache.spark.sql.types.StructType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.apache.spark.sql.functions.col;
+
+// Incremental mode: watches the input directory and only processes the play-by-play files that show up.
+// Each GAME_ID keeps a GameState (last margin, clock, last EVENTNUM) in the state store instead of the
+// window forward fill over the whole history, and the per player totals are a streaming aggregation,
+// so each trigger costs about as much as the new rows.
+//   --stream-checkpoint=<dir>   required, where the state store and file log live
+//   --stream-trigger=<interval> how often to look for new files (default "5 seconds")
+//   --stream-game-timeout=<d>   drop a game's state after this long without events (default "6 hours")
+//   --stream-partitions=N       state store partitions (default: default parallelism)
+//   --stream-run-seconds=N      stop after N seconds instead of running until killed
+// Rankings are printed every trigger (--top-season-type, default 10, and --top-career, default 100) and
+// written to --report-dir if given.
+// Events of a game are expected to arrive in EVENTNUM order across files, anything at or before the
+// last EVENTNUM already seen for that game is treated as a replay and skipped.
+public final class StreamingClutch {
+
+    private StreamingClutch() {
+    }
+
+    public static void run(SparkSession spark, JobOptions options, EwpaWeights weights)
+            throws TimeoutException, StreamingQueryException {
+        if (!options.has("stream-checkpoint")) {
+            throw new IllegalArgumentException("--stream needs --stream-checkpoint=<dir> for its state");
+        }
+        String gameTimeout = options.get("stream-game-timeout", "6 hours");
+        int topSeasonType = options.getInt("top-season-type", 10);
+        int topCareer = options.getInt("top-career", 100);
+        String reportDir = options.get("report-dir", null);
+
+        SparkSession session = session(spark,
+                options.getInt("stream-partitions", spark.sparkContext().defaultParallelism()));
+        Dataset<Row> totals = totals(session, options.inputPath(), weights, gameTimeout);
+
+        StreamingQuery query = totals.writeStream()
+                .outputMode(OutputMode.Complete())
+                .option("checkpointLocation", options.get("stream-checkpoint", null))
+                .trigger(Trigger.ProcessingTime(options.get("stream-trigger", "5 seconds")))
+                .foreachBatch((VoidFunction2<Dataset<Row>, Long>) (batch, batchId) ->
+                        publish(batch, batchId, topSeasonType, topCareer, reportDir))
+                .start();
+
+        if (options.has("stream-run-seconds")) {
+            query.awaitTermination(options.getInt("stream-run-seconds", 0) * 1000L);
+            query.stop();
+        } else {
+            query.awaitTermination();
+        }
+    }
+
+    // The streaming query gets its own session (same SparkContext, separate SQL conf), so the settings
+    // below only apply to this query and not to anything else run on the caller's session
+    static SparkSession session(SparkSession spark, int partitions) {
+        SparkSession session = spark.newSession();
+
+        // The per game state feeds a second stateful operator (the totals). Spark's check for that case is about
+        // rows a downstream stateful operator could drop as late against an event time watermark. Nothing in this
+        // query sets a watermark, so no row is ever late and the check has nothing to protect; everything else in
+        // the session keeps the default
+        session.conf().set("spark.sql.streaming.statefulOperator.checkCorrectness.enabled", "false");
+
+        // Every shuffle partition is a state store that gets touched each trigger, so the default 200 makes
+        // small triggers slow. This is fixed by the first run of a checkpoint, later runs keep that number.
+        session.conf().set("spark.sql.shuffle.partitions", partitions);
+        return session;
+    }
+
+    // Running totals per player and season type over the play-by-play files arriving in inputPath, kept in the
+    // state store: PLAYER_ID, SEASON_TYPE, PLAYER_NAME, Total_eWPA. Meant for Complete output mode
+    static Dataset<Row> totals(SparkSession session, String inputPath, EwpaWeights weights, String gameTimeout) {
+        Dataset<Row> events = session.readStream()
+                .option("header", "true")
+                .option("enforceSchema", "false")
+                .schema(PlayByPlaySchema.SCHEMA)
+                .csv(inputPath);
+
+        Dataset<Row> decoded = NBABigData.decodeRows(events).filter(col("GAME_ID").isNotNull());
+        StructType schema = decoded.schema();
+        int gameIdIndex = schema.fieldIndex("GAME_ID");
+        int eventNumIndex = schema.fieldIndex("EVENTNUM");
+        GameProcessor processor = new GameProcessor(schema, weights);
+
+        FlatMapGroupsWithStateFunction<Integer, Row, GameState, Row> perGame = (gameId, rows, state) -> {
+            if (state.hasTimedOut()) {
+                state.remove();
+                return Collections.emptyIterator();
+            }
+
+            // A trigger can bring several events of the same game, in any order
+            List<Row> gameRows = new ArrayList<>();
+            rows.forEachRemaining(gameRows::add);
+            gameRows.sort(Comparator.comparing(row -> (Integer) row.get(eventNumIndex),
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+
+            GameState gameState = state.exists() ? state.get() : new GameState();
+            List<Row> out = new ArrayList<>();
+            for (Row row : gameRows) {
+                Integer eventNum = (Integer) row.get(eventNumIndex);
+                if (eventNum != null && gameState.getEventNum() != null && eventNum <= gameState.getEventNum()) {
+                    continue;
+                }
+                processor.process(row, gameState, out);
+            }
+            state.update(gameState);
+            state.setTimeoutDuration(gameTimeout);
+            return out.iterator();
+        };
+
+        Dataset<Row> playerEvents = decoded
+                .groupByKey((MapFunction<Row, Integer>) row -> row.getInt(gameIdIndex), Encoders.INT())
+                .flatMapGroupsWithState(perGame, OutputMode.Append(), Encoders.bean(GameState.class),
+                        RowEncoder.apply(GameProcessor.playerEventSchema(schema)), GroupStateTimeout.ProcessingTimeTimeout());
+
+        return playerEvents
+                .filter(col("PLAYER_ID").isNotNull().and(col("eWPA").notEqual(0.0)))
+                .groupBy("PLAYER_ID", "SEASON_TYPE")
+                .agg(functions.max("PLAYER_NAME").alias("PLAYER_NAME"),
+                        functions.sum("eWPA").alias("Total_eWPA"));
+    }
+
+    // batch is the complete, current per player and season type totals table
+    private static void publish(Dataset<Row> batch, long batchId, int topSeasonType, int topCareer, String reportDir) {
+        batch.persist();
+
+        Dataset<Row> topSeasonTypeScores = batch.orderBy(functions.desc("Total_eWPA")).limit(topSeasonType);
+        System.out.println("Batch " + batchId + ": Top " + topSeasonType + " Players by Adjusted Clutchness Score:");
+        topSeasonTypeScores.show(topSeasonType);
+
+        // This aggregates all the seasons together for each player
+        Dataset<Row> topCareerScores = batch.groupBy("PLAYER_ID")
+                .agg(functions.max("PLAYER_NAME").alias("PLAYER_NAME"),
+                        functions.sum("Total_eWPA").alias("Total_ClutchScore"))
+                .filter(col("PLAYER_NAME").isNotNull())
+                .orderBy(functions.desc("Total_ClutchScore"))
+                .limit(topCareer);
+
+        System.out.println("Batch " + batchId + ": Top " + topCareer + " Players overall season Adjusted Clutchness Score:");
+        topCareerScores.show(topCareer);
+
+        if (reportDir != null) {
+            topSeasonTypeScores.coalesce(1).write().mode(SaveMode.Overwrite).option("header", "true")
+                    .csv(reportDir + "/stream_top_season_type");
+            topCareerScores.coalesce(1).write().mode(SaveMode.Overwrite).option("header", "true")
+                    .csv(reportDir + "/stream_top_career");
+            batch.write().mode(SaveMode.Overwrite).option("header", "true")
+                    .csv(reportDir + "/stream_season_type_scores");
+        }
+
+        batch.unpersist();
+    }
+}
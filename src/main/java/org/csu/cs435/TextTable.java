@@ -0,0 +1,60 @@
+package org.csu.cs435;
+
+import java.util.List;
+
+// Prints rows in the same layout as Dataset.show() so the local engine's output reads (and diffs)
+// like the Spark engine's
+final class TextTable {
+
+    private TextTable() {
+    }
+
+    static void show(String[] header, List<Object[]> rows, int numRows, boolean truncate) {
+        int shown = Math.min(numRows, rows.size());
+        String[][] cells = new String[shown + 1][];
+        cells[0] = header;
+        for (int r = 0; r < shown; r++) {
+            Object[] row = rows.get(r);
+            cells[r + 1] = new String[header.length];
+            for (int c = 0; c < header.length; c++) {
+                String cell = row[c] == null ? "null" : row[c].toString();
+                if (truncate && cell.length() > 20) {
+                    cell = cell.substring(0, 17) + "...";
+                }
+                cells[r + 1][c] = cell;
+            }
+        }
+
+        int[] widths = new int[header.length];
+        for (String[] row : cells) {
+            for (int c = 0; c < header.length; c++) {
+                widths[c] = Math.max(Math.max(widths[c], 3), row[c].length());
+            }
+        }
+
+        StringBuilder separator = new StringBuilder("+");
+        for (int width : widths) {
+            separator.append("-".repeat(width)).append('+');
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append(separator).append('\n');
+        for (int r = 0; r < cells.length; r++) {
+            out.append('|');
+            for (int c = 0; c < header.length; c++) {
+                String padding = " ".repeat(widths[c] - cells[r][c].length());
+                // show() right aligns when truncating and left aligns when not
+                out.append(truncate ? padding + cells[r][c] : cells[r][c] + padding).append('|');
+            }
+            out.append('\n');
+            if (r == 0) {
+                out.append(separator).append('\n');
+            }
+        }
+        out.append(separator).append('\n');
+        if (rows.size() > numRows) {
+            out.append("only showing top ").append(numRows).append(numRows == 1 ? " row" : " rows").append('\n');
+        }
+        System.out.println(out);
+    }
+}
@@ -0,0 +1,204 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.functions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.IntFunction;
+
+import static org.apache.spark.sql.functions.col;
+
+// What-if eWPA weights without re-running the job per weight set.
+// Spark counts every player's events once: (player, season type, player slot, event code) -> count.
+// Only the counts where the player sat in the slot that event credits matter, so the scores for every
+// weight set are then one dense (player x season type) x code matrix times a code x weight set matrix.
+// Each set gets the same two rankings as the normal report: one per season type from the (player, season type)
+// rows, and the career ranking (SEASON_TYPE "Career") from their sum per player.
+//   --sweep=<file>      weight sets, a "set" column plus one column per event type label to change
+//   --sweep-top=N       players ranked per weight set and ranking (default 10)
+//   --sweep-out=<file>  write "set,SEASON_TYPE,rank,PLAYER_ID,PLAYER_NAME,eWPA" here instead of printing
+public final class WeightSweep {
+
+    static final String CAREER = "Career";
+
+    private WeightSweep() {
+    }
+
+    public static void run(SparkSession spark, JobOptions options, Dataset<Row> playerData, EwpaWeights baseWeights)
+            throws IOException {
+        List<String> setNames = new ArrayList<>();
+        double[] weightMatrix = readWeightSets(spark, options.get("sweep", null), baseWeights, setNames);
+        int sets = setNames.size();
+
+        // Count matrix, computed once for all weight sets. The name comes along in the same aggregation
+        List<Row> counts = playerData
+                .filter(col("PLAYER_ID").isNotNull())
+                .groupBy("PLAYER_ID", "SEASON_TYPE", "PLAYER_SLOT", "EVENT_CODE")
+                .agg(functions.count(functions.lit(1)), functions.max("PLAYER_NAME"))
+                .collectAsList();
+
+        Map<Object, String> names = new HashMap<>();
+        for (Row row : counts) {
+            if (!row.isNullAt(5)) {
+                names.merge(row.get(0), row.getString(5), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+        }
+
+        // Rows are (player, season type), career scores are the sum over a player's rows
+        Map<List<Object>, Integer> rowIndex = new HashMap<>();
+        Map<Object, Integer> playerIndex = new LinkedHashMap<>();
+        List<double[]> rowCounts = new ArrayList<>();
+        List<Integer> rowPlayers = new ArrayList<>();
+        List<String> rowSeasonTypes = new ArrayList<>();
+        for (Row row : counts) {
+            int code = row.getInt(3);
+            if (row.getInt(2) != EventCode.creditedPlayer(code)) {
+                continue;
+            }
+            Object playerId = row.get(0);
+            Integer index = rowIndex.get(Arrays.asList(playerId, row.get(1)));
+            if (index == null) {
+                index = rowCounts.size();
+                rowIndex.put(Arrays.asList(playerId, row.get(1)), index);
+                rowCounts.add(new double[EventCode.COUNT]);
+                rowPlayers.add(playerIndex.computeIfAbsent(playerId, id -> playerIndex.size()));
+                rowSeasonTypes.add(row.getString(1));
+            }
+            rowCounts.get(index)[code] += row.getLong(4);
+        }
+
+        // rowScores[row][set] = sum over codes of count * weight, scores[player][set] = sum over the player's rows
+        int rows = rowCounts.size();
+        int players = playerIndex.size();
+        double[] rowScores = new double[rows * sets];
+        double[] scores = new double[players * sets];
+        for (int r = 0; r < rows; r++) {
+            double[] rowCount = rowCounts.get(r);
+            int out = r * sets;
+            for (int code = 0; code < EventCode.COUNT; code++) {
+                double n = rowCount[code];
+                if (n == 0) {
+                    continue;
+                }
+                int in = code * sets;
+                for (int k = 0; k < sets; k++) {
+                    rowScores[out + k] += n * weightMatrix[in + k];
+                }
+            }
+            int player = rowPlayers.get(r) * sets;
+            for (int k = 0; k < sets; k++) {
+                scores[player + k] += rowScores[out + k];
+            }
+        }
+
+        Object[] playerIds = playerIndex.keySet().toArray();
+        Map<String, List<Integer>> seasonTypeRows = new TreeMap<>();
+        for (int r = 0; r < rows; r++) {
+            seasonTypeRows.computeIfAbsent(rowSeasonTypes.get(r), seasonType -> new ArrayList<>()).add(r);
+        }
+        List<Integer> namedPlayers = new ArrayList<>();
+        for (int p = 0; p < players; p++) {
+            // Same as the career scores, players without a name are left out
+            if (names.containsKey(playerIds[p])) {
+                namedPlayers.add(p);
+            }
+        }
+
+        int top = options.getInt("sweep-top", 10);
+        StringBuilder report = new StringBuilder("set,SEASON_TYPE,rank,PLAYER_ID,PLAYER_NAME,eWPA\n");
+        for (int k = 0; k < sets; k++) {
+            for (Map.Entry<String, List<Integer>> seasonType : seasonTypeRows.entrySet()) {
+                appendRanking(report, setNames.get(k), seasonType.getKey(), seasonType.getValue(), rowScores, sets, k,
+                        top, r -> playerIds[rowPlayers.get(r)], names);
+            }
+            appendRanking(report, setNames.get(k), CAREER, namedPlayers, scores, sets, k, top, p -> playerIds[p], names);
+        }
+
+        if (options.has("sweep-out")) {
+            Path out = new Path(options.get("sweep-out", null));
+            FileSystem fs = out.getFileSystem(spark.sparkContext().hadoopConfiguration());
+            try (FSDataOutputStream stream = fs.create(out, true);
+                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                writer.print(report);
+            }
+            System.out.println("Wrote rankings for " + sets + " weight sets to " + out);
+        } else {
+            System.out.print(report);
+        }
+    }
+
+    // Top entries of one ranking by scores[entry * sets + set]
+    private static void appendRanking(StringBuilder report, String set, String seasonType, List<Integer> entries,
+                                      double[] scores, int sets, int k, int top, IntFunction<Object> playerId,
+                                      Map<Object, String> names) {
+        List<Integer> ranked = new ArrayList<>(entries);
+        ranked.sort((a, b) -> Double.compare(scores[b * sets + k], scores[a * sets + k]));
+        for (int rank = 0; rank < Math.min(top, ranked.size()); rank++) {
+            int entry = ranked.get(rank);
+            Object id = playerId.apply(entry);
+            report.append(set).append(',').append(seasonType).append(',').append(rank + 1).append(',')
+                    .append(id).append(',').append(names.get(id)).append(',')
+                    .append(scores[entry * sets + k]).append('\n');
+        }
+    }
+
+    // Weight matrix laid out as weights[code * sets + set]. Columns that aren't in the file keep the base weight.
+    private static double[] readWeightSets(SparkSession spark, String path, EwpaWeights baseWeights,
+                                           List<String> setNames) throws IOException {
+        Path file = new Path(path);
+        FileSystem fs = file.getFileSystem(spark.sparkContext().hadoopConfiguration());
+        List<double[]> sets = new ArrayList<>();
+        try (FSDataInputStream in = fs.open(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("Empty sweep file " + path);
+            }
+            String[] columns = header.split(",");
+            int[] codes = new int[columns.length];
+            for (int i = 1; i < columns.length; i++) {
+                String label = columns[i].trim();
+                codes[i] = EventCode.fromLabel(label);
+                if (codes[i] == EventCode.OTHER && !label.equals(EventCode.label(EventCode.OTHER))) {
+                    throw new IllegalArgumentException("Unknown event type in sweep file " + path + ": " + label);
+                }
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                double[] weights = baseWeights.toArray();
+                for (int i = 1; i < columns.length && i < values.length; i++) {
+                    if (!values[i].trim().isEmpty()) {
+                        weights[codes[i]] = Double.parseDouble(values[i].trim());
+                    }
+                }
+                setNames.add(values[0].trim());
+                sets.add(weights);
+            }
+        }
+
+        double[] matrix = new double[EventCode.COUNT * sets.size()];
+        for (int k = 0; k < sets.size(); k++) {
+            for (int code = 0; code < EventCode.COUNT; code++) {
+                matrix[code * sets.size() + k] = sets.get(k)[code];
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,165 @@
+package org.csu.cs435;
+
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Hadoop codec for .zst files on top of zstd-jni (the version Spark ships for its own shuffle compression).
+// Hadoop's ZStandardCodec only works with a libhadoop built with zstd, which the pip/tarball Spark installs
+// don't have. Like gzip, a zstd file can't be split, so it is always read by one task.
+// register puts it in io.compression.codecs, where it takes over the .zst extension.
+public class ZstdCodec implements CompressionCodec {
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out) throws IOException {
+        return new ZstdOutput(out);
+    }
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out, Compressor compressor) throws IOException {
+        return new ZstdOutput(out);
+    }
+
+    // No Compressor/Decompressor objects, the streams do everything. CodecPool copes with null here.
+    @Override
+    public Class<? extends Compressor> getCompressorType() {
+        return null;
+    }
+
+    @Override
+    public Compressor createCompressor() {
+        return null;
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in) throws IOException {
+        return new ZstdInput(in);
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in, Decompressor decompressor) throws IOException {
+        return new ZstdInput(in);
+    }
+
+    @Override
+    public Class<? extends Decompressor> getDecompressorType() {
+        return null;
+    }
+
+    @Override
+    public Decompressor createDecompressor() {
+        return null;
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return ".zst";
+    }
+
+    // Adds the codec to conf, keeping whatever codecs are configured already
+    static void register(Configuration conf) {
+        String codecs = conf.get("io.compression.codecs", "");
+        if (!codecs.contains(ZstdCodec.class.getName())) {
+            conf.set("io.compression.codecs", codecs.isEmpty() ? ZstdCodec.class.getName()
+                    : codecs + "," + ZstdCodec.class.getName());
+        }
+    }
+
+    private static final class ZstdInput extends CompressionInputStream {
+        private ZstdInputStreamNoFinalizer zstd;
+
+        ZstdInput(InputStream in) throws IOException {
+            super(in);
+            zstd = decoder();
+        }
+
+        // Closing a zstd stream frees its native context but also closes the stream it reads, so it gets a
+        // view of in whose close() does nothing and in itself is closed by super.close()
+        private ZstdInputStreamNoFinalizer decoder() throws IOException {
+            return new ZstdInputStreamNoFinalizer(new FilterInputStream(in) {
+                @Override
+                public void close() {
+                }
+            });
+        }
+
+        @Override
+        public int read() throws IOException {
+            return zstd.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return zstd.read(b, off, len);
+        }
+
+        // Drops whatever was buffered from the old position and starts decoding fresh from where in is now
+        @Override
+        public void resetState() throws IOException {
+            zstd.close();
+            zstd = decoder();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                zstd.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    // Each finish() ends the current zstd frame and leaves out open, the next write starts a new frame.
+    // A reader decodes the frames one after the other as one stream. close() is CompressionOutputStream's:
+    // finish() and then out.close()
+    private static final class ZstdOutput extends CompressionOutputStream {
+        // null before the first write and between finish() and the next one
+        private ZstdOutputStreamNoFinalizer zstd;
+
+        ZstdOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            frame().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            frame().write(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (zstd != null) {
+                zstd.closeWithoutClosingParentStream();
+                zstd = null;
+            }
+        }
+
+        // finish() already dropped the frame's state, and a frame that is still open can't take back what it
+        // has written to out, so there is nothing to reset
+        @Override
+        public void resetState() {
+        }
+
+        private ZstdOutputStreamNoFinalizer frame() throws IOException {
+            if (zstd == null) {
+                zstd = new ZstdOutputStreamNoFinalizer(out);
+            }
+            return zstd;
+        }
+    }
+}
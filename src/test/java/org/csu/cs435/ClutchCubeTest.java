@@ -0,0 +1,113 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks the cube against the batch scores it pre-aggregates, and that writing one season leaves the other
+// SEASON partitions alone
+public class ClutchCubeTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("ClutchCubeTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "3")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void playerBySeasonTypeRollupMatchesBatchScores(@TempDir Path dir) throws IOException {
+        EwpaWeights weights = EwpaWeights.defaults();
+        Dataset<Row> playerData = playerData(dir.resolve("in"), weights);
+        String cubeDir = dir.resolve("cube").toString();
+        ClutchCube.write(spark, playerData, weights, cubeDir);
+
+        Map<String, Double> cube = new HashMap<>();
+        for (Row row : ClutchCubeQuery.rollup(ClutchCube.read(spark, cubeDir), Arrays.asList("PLAYER_ID", "SEASON_TYPE"))
+                .select("PLAYER_ID", "SEASON_TYPE", "eWPA").collectAsList()) {
+            cube.put(row.get(0) + "|" + row.getString(1), row.getDouble(2));
+        }
+        Map<String, Double> expected = new HashMap<>();
+        for (Row row : NBABigData.scorePlayerEvents(playerData).seasonTypeScores().collectAsList()) {
+            expected.put(row.get(0) + "|" + row.getString(2), row.getDouble(3));
+        }
+        assertFalse(expected.isEmpty(), "No clutch events in the test data");
+
+        for (Map.Entry<String, Double> score : expected.entrySet()) {
+            assertTrue(cube.containsKey(score.getKey()), "Cube is missing " + score.getKey());
+            assertEquals(score.getValue(), cube.get(score.getKey()), 1e-9, score.getKey());
+        }
+        // The scorer drops events worth 0, the cube still counts them, so anything only in the cube sums to 0
+        for (Map.Entry<String, Double> score : cube.entrySet()) {
+            if (!expected.containsKey(score.getKey())) {
+                assertEquals(0.0, score.getValue(), 1e-9, score.getKey());
+            }
+        }
+    }
+
+    @Test
+    void rewritingOneSeasonKeepsTheOthers(@TempDir Path dir) throws IOException {
+        EwpaWeights weights = EwpaWeights.defaults();
+        Dataset<Row> playerData = playerData(dir.resolve("in"), weights);
+        String cubeDir = dir.resolve("cube").toString();
+        ClutchCube.write(spark, playerData, weights, cubeDir);
+        List<String> season2019 = rows(ClutchCube.read(spark, cubeDir).filter(col(ClutchCube.SEASON).equalTo(2019)));
+        assertFalse(season2019.isEmpty());
+
+        // A run over just one 2020 game replaces all of 2020 with that game and leaves 2019 as it was
+        int game = playerData.filter(PlayByPlaySchema.season(col("GAME_ID")).equalTo(2020))
+                .select("GAME_ID").first().getInt(0);
+        Dataset<Row> oneGame = playerData.filter(col("GAME_ID").equalTo(game));
+        ClutchCube.write(spark, oneGame, weights, cubeDir);
+
+        Dataset<Row> rewritten = ClutchCube.read(spark, cubeDir);
+        assertEquals(season2019, rows(rewritten.filter(col(ClutchCube.SEASON).equalTo(2019))));
+        String oneGameDir = dir.resolve("one-game").toString();
+        ClutchCube.write(spark, oneGame, weights, oneGameDir);
+        assertEquals(rows(ClutchCube.read(spark, oneGameDir)),
+                rows(rewritten.filter(col(ClutchCube.SEASON).equalTo(2020))));
+    }
+
+    // Player events from the window path over two generated seasons, 2019 and 2020
+    private static Dataset<Row> playerData(Path input, EwpaWeights weights) throws IOException {
+        PlayByPlayGenerator.write(input, 2019, 2, 30, 29);
+        return NBABigData.explodePlayerEvents(
+                NBABigData.preprocessData(NBABigData.readData(spark, input.toString()), spark), spark, weights).cache();
+    }
+
+    private static List<String> rows(Dataset<Row> cube) {
+        List<String> rows = new ArrayList<>();
+        for (Row row : cube.selectExpr("PLAYER_ID", "PLAYER_NAME", "SEASON_TYPE", "EVENT_CODE", "EVENT_TYPE", "TIMING",
+                "EVENTS", "eWPA", ClutchCube.SEASON).collectAsList()) {
+            rows.add(row.toString());
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+}
@@ -0,0 +1,224 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Checks the PlayEvent event codes and the native classifier against classifyEvent, and the token matcher against
+// the contains checks, on sample play-by-play rows
+public class EventClassifierTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("EventClassifierTest")
+                .master("local[1]")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void nativeClassifierMatchesClassifyEvent() {
+        StructType schema = new StructType()
+                .add("EVENTMSGTYPE", DataTypes.IntegerType)
+                .add("EVENTMSGACTIONTYPE", DataTypes.IntegerType)
+                .add("HOMEDESCRIPTION", DataTypes.StringType)
+                .add("VISITORDESCRIPTION", DataTypes.StringType)
+                .add("SECONDS_REMAINING", DataTypes.IntegerType)
+                .add("SCOREMARGIN", DataTypes.IntegerType)
+                .add("PLAYER1_NAME", DataTypes.StringType)
+                .add("PLAYER2_NAME", DataTypes.StringType)
+                .add("PLAYER3_NAME", DataTypes.StringType);
+
+        List<Row> rows = Arrays.asList(
+                RowFactory.create(1, 1, "Malone 18' Jump Shot (22 PTS) (Stockton 9 AST)", null, 200, -2, "Karl Malone", "John Stockton", null),
+                RowFactory.create(1, 1, "Malone 18' Jump Shot (22 PTS) (Stockton 9 AST)", null, 5, -2, "Karl Malone", "John Stockton", null),
+                RowFactory.create(1, 1, "Malone 18' Jump Shot (22 PTS) (Stockton 9 AST)", null, 5, 1, "Karl Malone", "John Stockton", null),
+                RowFactory.create(1, 79, null, "Jordan 25' 3PT Pullup Jump Shot (3 PTS)", 8, 3, "Michael Jordan", null, null),
+                RowFactory.create(1, 79, "", "Jordan 25' 3PT Pullup Jump Shot (3 PTS)", 8, 3, "Michael Jordan", null, null),
+                RowFactory.create(1, 79, "Miller 26' 3PT Jump Shot (3 PTS)", null, 9, -4, "Reggie Miller", null, null),
+                RowFactory.create(2, 1, null, "MISS Bird 24' 3PT Jump Shot", 3, 2, "Larry Bird", null, null),
+                RowFactory.create(2, 1, null, "MISS Bird 24' 3PT Jump Shot", 30, 2, "Larry Bird", null, null),
+                RowFactory.create(2, 5, "MISS Duncan 2' Layup", "Olajuwon BLOCK (3 BLK)", 2, -1, "Tim Duncan", null, "Hakeem Olajuwon"),
+                RowFactory.create(2, 5, "MISS Duncan 2' Layup", null, 150, -1, "Tim Duncan", null, null),
+                RowFactory.create(1, 7, "O'Neal Dunk (30 PTS)", null, 10, 0, "Shaquille O'Neal", null, null),
+                RowFactory.create(1, 7, "O'Neal Dunk (30 PTS)", null, 0, 0, "Shaquille O'Neal", null, null),
+                RowFactory.create(1, 7, null, "Garnett Dunk (30 PTS)", 4, 2, "Kevin Garnett", null, null),
+                RowFactory.create(3, 10, "Bryant Free Throw 1 of 2 (40 PTS)", null, 7, 1, "Kobe Bryant", null, null),
+                RowFactory.create(3, 11, "MISS Bryant Free Throw 2 of 2", null, 7, 1, "Kobe Bryant", null, null),
+                RowFactory.create(3, 11, null, "MISS Bryant Free Throw 2 of 2", 100, 1, "Kobe Bryant", null, null),
+                RowFactory.create(4, 0, "Rodman REBOUND (Off:2 Def:10)", null, 45, 2, "Dennis Rodman", null, null),
+                RowFactory.create(4, 0, null, "Pistons Rebound", 45, 2, null, null, null),
+                RowFactory.create(5, 1, "Paul Bad Pass Turnover (P2.T3)", "Iverson STEAL (2 STL)", 6, -3, "Chris Paul", "Allen Iverson", null),
+                RowFactory.create(5, 1, null, "Team Turnover: Shot Clock", 60, -3, null, null, null),
+                RowFactory.create(6, 2, "Foul: Personal", null, 60, 0, "Ben Wallace", null, null),
+                RowFactory.create(null, 2, "Malone 3PT Jump Shot", null, 60, 0, "Karl Malone", null, null),
+                RowFactory.create(1, null, "Malone Jump Shot (2 PTS)", null, 60, 0, "Karl Malone", null, null),
+                RowFactory.create(1, 1, "Nash 3pt Shot (Stockton ast)", null, null, -5, "Steve Nash", "John Stockton", null),
+                RowFactory.create(12, 0, null, null, 300, 0, null, null, null)
+        );
+
+        // The JVM paths: eventCodes on the row, clutchCodes once the margin is known
+        for (Row row : rows) {
+            Integer seconds = (Integer) row.get(4);
+            int eventCodes = PlayEvent.eventCodes(DescriptionTokens.of(row.getString(2), row.getString(3)),
+                    row.get(0) != null, row.get(1) != null, seconds == null ? -1 : seconds,
+                    row.get(6) != null || row.get(7) != null || row.get(8) != null);
+            assertEquals(expected(row, row.getString(2)), labels(PlayEvent.clutchCodes(eventCodes, seconds == null ? -1 : seconds, row.getInt(5))),
+                    "Mismatch for row " + row);
+        }
+
+        // The Spark path: decode the rows as play-by-play, then classify. decode reads a missing home description
+        // as an empty one
+        List<Row> raw = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            Integer seconds = (Integer) row.get(4);
+            raw.add(RowFactory.create(21900001, i, row.get(0), row.get(1), 4,
+                    seconds == null ? null : String.format("%d:%02d", seconds / 60, seconds % 60),
+                    row.get(2), row.get(3), String.valueOf(row.get(5)),
+                    1, row.get(6), 2, row.get(7), 3, row.get(8), 10));
+        }
+        Dataset<Row> decoded = PlayEvent.decode(spark.createDataFrame(raw, RAW_SCHEMA));
+        assertFalse(Arrays.asList(decoded.columns()).contains("HOMEDESCRIPTION"));
+        List<Row> classified = decoded
+                .withColumn("CLASSIFIED_CODES", EventClassifier.classify(col("EVENT_CODES"), col("SECONDS_REMAINING"), col("SCOREMARGIN")))
+                .withColumn("HAS_STEAL_OR_BLOCK", DescriptionTokens.has(col("DESCRIPTION_TOKENS"),
+                        DescriptionTokens.STEAL | DescriptionTokens.BLOCK))
+                .orderBy("EVENTNUM")
+                .select("CLASSIFIED_CODES", "DESCRIPTION_TOKENS", "HAS_STEAL_OR_BLOCK")
+                .collectAsList();
+        assertEquals(rows.size(), classified.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            // The stored mask is the decoded descriptions' tokens, a missing one counted as empty
+            String home = row.getString(2) == null ? "" : row.getString(2);
+            String visitor = row.getString(3) == null ? "" : row.getString(3);
+            assertEquals(DescriptionTokens.of(home, visitor), classified.get(i).getInt(1), "Tokens for row " + row);
+            String upperHome = home.toUpperCase();
+            String upperVisitor = visitor.toUpperCase();
+            assertEquals(NBABigData.isSteal(upperHome, upperVisitor) || NBABigData.isBlock(upperHome, upperVisitor),
+                    classified.get(i).getBoolean(2), "has() for row " + row);
+            List<String> actual = new ArrayList<>();
+            for (Integer code : classified.get(i).<Integer>getList(0)) {
+                actual.add(EventCode.label(code));
+            }
+            assertEquals(expected(row, row.getString(2) == null ? "" : row.getString(2)), actual, "Mismatch for row " + row);
+        }
+    }
+
+    @Test
+    void keepsDescriptionsOnlyWhenAsked() {
+        Dataset<Row> raw = spark.createDataFrame(Arrays.asList(RowFactory.create(21900001, 1, 1, 1, 4, "0:05",
+                null, "Jordan 25' 3PT Jump Shot (3 PTS)", "1", 23, "Michael Jordan", null, null, null, null, 10)), RAW_SCHEMA);
+        Row kept = PlayEvent.decode(raw, true).select("HOMEDESCRIPTION", "VISITORDESCRIPTION").first();
+        assertEquals("", kept.getString(0));
+        assertEquals("Jordan 25' 3PT Jump Shot (3 PTS)", kept.getString(1));
+        assertEquals(Arrays.asList(PlayEvent.SCHEMA.fieldNames()), Arrays.asList(PlayEvent.decode(raw).columns()));
+    }
+
+    // The play-by-play columns PlayEvent.decode reads, typed like PlayByPlaySchema
+    private static final StructType RAW_SCHEMA = new StructType()
+            .add("GAME_ID", DataTypes.IntegerType)
+            .add("EVENTNUM", DataTypes.IntegerType)
+            .add("EVENTMSGTYPE", DataTypes.IntegerType)
+            .add("EVENTMSGACTIONTYPE", DataTypes.IntegerType)
+            .add("PERIOD", DataTypes.IntegerType)
+            .add("PCTIMESTRING", DataTypes.StringType)
+            .add("HOMEDESCRIPTION", DataTypes.StringType)
+            .add("VISITORDESCRIPTION", DataTypes.StringType)
+            .add("SCOREMARGIN", DataTypes.StringType)
+            .add("PLAYER1_ID", DataTypes.IntegerType)
+            .add("PLAYER1_NAME", DataTypes.StringType)
+            .add("PLAYER2_ID", DataTypes.IntegerType)
+            .add("PLAYER2_NAME", DataTypes.StringType)
+            .add("PLAYER3_ID", DataTypes.IntegerType)
+            .add("PLAYER3_NAME", DataTypes.StringType)
+            .add("WEEK_OF_SEASON", DataTypes.IntegerType);
+
+    private static List<String> expected(Row row, String home) {
+        return NBABigData.classifyEvent((Integer) row.get(0), (Integer) row.get(1), home, row.getString(3),
+                (Integer) row.get(4), (Integer) row.get(5), row.getString(6), row.getString(7), row.getString(8));
+    }
+
+    // Labels of the codes in a mask, lowest code first
+    private static List<String> labels(int codes) {
+        List<String> labels = new ArrayList<>();
+        for (int code = 0; code < EventCode.COUNT; code++) {
+            if ((codes & 1 << code) != 0) {
+                labels.add(EventCode.label(code));
+            }
+        }
+        return labels;
+    }
+
+    @Test
+    void tokensMatchContains() {
+        List<String> descriptions = Arrays.asList(null, "", "Jordan 25' 3PT Pullup Jump Shot (3 PTS)",
+                "MISS Duncan 2' Layup", "O'Neal Dunk (30 PTS)", "MISS Bryant Free Throw 2 of 2", "free throw",
+                "Rodman REBOUND (Off:2 Def:10)", "Paul Bad Pass Turnover (P2.T3)", "Iverson STEAL (2 STL)",
+                "Olajuwon BLOCK (3 BLK)", "Nash 3pt Shot (Stockton ast)", "Fast break", "MISSMISS", "FREE THROWFREE",
+                "Ginóbili 3PT Shot", "3P", "FREE  THROW", "LAYU", "TurnOVER:");
+        StructType schema = new StructType()
+                .add("HOMEDESCRIPTION", DataTypes.StringType)
+                .add("VISITORDESCRIPTION", DataTypes.StringType);
+        List<Row> rows = new ArrayList<>();
+        for (String home : descriptions) {
+            for (String visitor : descriptions) {
+                rows.add(RowFactory.create(home, visitor));
+            }
+        }
+
+        List<Row> scanned = spark.createDataFrame(rows, schema)
+                .withColumn("DESCRIPTION_TOKENS", DescriptionTokens.column(col("HOMEDESCRIPTION"), col("VISITORDESCRIPTION")))
+                .collectAsList();
+        for (Row row : scanned) {
+            String home = row.getString(0);
+            String visitor = row.getString(1);
+            int tokens = DescriptionTokens.of(home, visitor);
+            assertEquals(tokens, row.getInt(2), "Spark mask for " + row);
+
+            String upperHome = home == null ? null : home.toUpperCase();
+            String upperVisitor = visitor == null ? null : visitor.toUpperCase();
+            assertEquals(home != null, (tokens & DescriptionTokens.HOME_PRESENT) != 0);
+            assertEquals(NBABigData.isThreePointer(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.THREE_POINTER));
+            assertEquals(NBABigData.isTwoPointer(upperHome, upperVisitor), DescriptionTokens.twoPointer(tokens));
+            assertEquals(NBABigData.isMissedShot(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.MISS));
+            assertEquals(NBABigData.isFreeThrow(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.FREE_THROW));
+            assertEquals(NBABigData.isRebound(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.REBOUND));
+            assertEquals(NBABigData.isTurnover(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.TURNOVER));
+            assertEquals(NBABigData.isAssist(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.ASSIST));
+            assertEquals(NBABigData.isSteal(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.STEAL));
+            assertEquals(NBABigData.isBlock(upperHome, upperVisitor), DescriptionTokens.either(tokens, DescriptionTokens.BLOCK));
+        }
+    }
+
+    @Test
+    void labelMatchesEventCode() {
+        Dataset<Row> codes = spark.range(EventCode.COUNT).withColumn("code", col("id").cast(DataTypes.IntegerType));
+        for (Row row : codes.withColumn("label", EventClassifier.label(col("code"))).collectAsList()) {
+            assertEquals(EventCode.label(row.getInt(1)), row.getString(2));
+        }
+    }
+}
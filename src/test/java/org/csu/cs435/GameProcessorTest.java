@@ -0,0 +1,155 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Checks that the single-pass GameProcessor emits the same player event rows as the window path
+// (preprocessData + explodePlayerEvents): margin carry-forward across null runs and period boundaries,
+// EVENTNUM ordering inside a game, and the clutch filters
+public class GameProcessorTest {
+
+    // Columns both paths always produce, compared row by row
+    private static final String[] COMPARED = {
+            "SEASON_TYPE", "PLAYER_ID", "PLAYER_NAME", "PLAYER_SLOT", "eWPA", "EVENT_TYPE", "EVENT_CODE",
+            "DESCRIPTION_TOKENS", "SECONDS_REMAINING", "SCOREMARGIN", "GAME_ID", "PERIOD", "EVENTNUM"
+    };
+
+    // The play-by-play columns PlayEvent.decode reads, typed like PlayByPlaySchema
+    private static final StructType RAW_SCHEMA = new StructType()
+            .add("GAME_ID", DataTypes.IntegerType)
+            .add("EVENTNUM", DataTypes.IntegerType)
+            .add("EVENTMSGTYPE", DataTypes.IntegerType)
+            .add("EVENTMSGACTIONTYPE", DataTypes.IntegerType)
+            .add("PERIOD", DataTypes.IntegerType)
+            .add("PCTIMESTRING", DataTypes.StringType)
+            .add("HOMEDESCRIPTION", DataTypes.StringType)
+            .add("VISITORDESCRIPTION", DataTypes.StringType)
+            .add("SCOREMARGIN", DataTypes.StringType)
+            .add("PLAYER1_ID", DataTypes.IntegerType)
+            .add("PLAYER1_NAME", DataTypes.StringType)
+            .add("PLAYER2_ID", DataTypes.IntegerType)
+            .add("PLAYER2_NAME", DataTypes.StringType)
+            .add("PLAYER3_ID", DataTypes.IntegerType)
+            .add("PLAYER3_NAME", DataTypes.StringType)
+            .add("WEEK_OF_SEASON", DataTypes.IntegerType);
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("GameProcessorTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "3")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void matchesWindowPathOnEdgeCases() {
+        List<Row> rows = Arrays.asList(
+                // Finals game, listed out of EVENTNUM order and interleaved with the others
+                raw(41900002, 7, 1, 1, 4, "0:09", null, "MISS Jordan 3PT Jump Shot", null, 23, "Michael Jordan", null, null, null, null, 32),
+                raw(41900002, 3, 1, 1, 4, "1:10", "Malone 16' Jump Shot (20 PTS)", null, "-7", 32, "Karl Malone", null, null, null, null, 32),
+                // Regular season game: the period 3 margin is filtered out with its row and must not carry into period 4
+                raw(21900001, 1, 1, 1, 3, "0:30", "Malone 18' Jump Shot (22 PTS)", null, "-2", 32, "Karl Malone", null, null, null, null, 10),
+                raw(21900001, 2, 2, 1, 4, "4:50", "MISS Malone 3PT Jump Shot", null, null, 32, "Karl Malone", null, null, null, null, 10),
+                raw(21900001, 3, 1, 1, 4, "4:40", "Stockton 3PT Jump Shot (3 PTS) (Malone 1 AST)", null, "3", 12, "John Stockton", 32, "Karl Malone", null, null, 10),
+                raw(21900001, 4, 2, 1, 4, "4:20", null, "MISS Jordan 15' Jump Shot", null, 23, "Michael Jordan", null, null, null, null, 10),
+                raw(21900001, 5, 4, 0, 4, "4:19", "Malone REBOUND (Off:1 Def:3)", null, null, 32, "Karl Malone", null, null, null, null, 10),
+                // Out of the 6 point window, and the null run after it stays out
+                raw(21900001, 6, 1, 7, 4, "4:00", "Malone Dunk (24 PTS)", null, "9", 32, "Karl Malone", null, null, null, null, 10),
+                raw(21900001, 7, 5, 1, 4, "3:40", null, "Pippen Bad Pass Turnover (P1.T4)", null, 33, "Scottie Pippen", null, null, null, null, 10),
+                raw(21900001, 8, 1, 1, 4, "3:20", null, "Pippen 3PT Jump Shot (12 PTS)", "TIE", 33, "Scottie Pippen", null, null, null, null, 10),
+                raw(21900001, 9, 3, 11, 4, "0:08", "Stockton Free Throw 1 of 2 (10 PTS)", null, null, 12, "John Stockton", null, null, null, null, 10),
+                raw(21900001, 10, 2, 1, 4, "0:05", "MISS Stockton 3PT Jump Shot", null, null, 12, "John Stockton", null, null, null, null, 10),
+                raw(21900001, 11, 4, 0, 4, "0:04", null, "Rodman REBOUND (Off:3 Def:9)", null, 91, "Dennis Rodman", null, null, null, null, 10),
+                // Overtime: the margin from the end of period 4 carries over the period boundary
+                raw(21900001, 12, 12, 0, 5, "5:00", null, null, null, null, null, null, null, null, null, 10),
+                raw(21900001, 13, 1, 5, 5, "4:45", null, "Jordan Driving Layup (30 PTS)", null, 23, "Michael Jordan", null, null, null, null, 10),
+                raw(21900001, 14, 5, 2, 5, "4:30", "Stockton Lost Ball Turnover (P1.T2)", "Jordan STEAL (2 STL)", "-2", 12, "John Stockton", 23, "Michael Jordan", null, null, 10),
+                raw(21900001, 15, 2, 1, 5, "0:03", "MISS Stockton 26' 3PT Jump Shot", "Pippen BLOCK (1 BLK)", null, 12, "John Stockton", null, null, 33, "Scottie Pippen", 10),
+                raw(21900001, 16, null, null, 5, "0:02", "Stockton unknown event", null, null, 12, "John Stockton", null, null, null, null, 10),
+                // Back to the finals game
+                raw(41900002, 5, 1, 1, 4, "0:40", null, "Jordan 3PT Jump Shot (40 PTS)", null, 23, "Michael Jordan", null, null, null, null, 32),
+                raw(41900002, 1, 1, 1, 4, "2:00", "Malone 10' Jump Shot (18 PTS)", null, "5", 32, "Karl Malone", null, null, null, null, 32),
+                raw(41900002, 6, 1, 1, 4, "0:20", "Stockton 3PT Jump Shot (8 PTS)", null, "-1", 12, "John Stockton", null, null, null, null, 32),
+                raw(41900002, 2, 1, 1, 4, "1:30", null, "Pippen 20' Jump Shot (14 PTS)", null, 33, "Scottie Pippen", null, null, null, null, 32),
+                raw(41900002, 4, 2, 1, 4, "0:59", "MISS Stockton 2' Layup", null, null, 12, "John Stockton", null, null, null, null, 32),
+                // Playoff game that never sets a margin, so nothing in it is clutch
+                raw(41900010, 1, 1, 1, 4, "0:30", "Barkley 8' Hook Shot (20 PTS)", null, null, 50, "Charles Barkley", null, null, null, null, 27),
+                raw(41900010, 2, 4, 0, 4, "0:20", null, "Drexler REBOUND (Off:0 Def:4)", null, 51, "Clyde Drexler", null, null, null, null, 27));
+
+        Dataset<Row> raw = spark.createDataFrame(rows, RAW_SCHEMA);
+        assertSamePlayerEvents(raw, false);
+        // --keep-descriptions: both paths carry the same strings through
+        assertSamePlayerEvents(raw, true);
+    }
+
+    @Test
+    void matchesWindowPathOnGeneratedGames(@TempDir Path dir) throws IOException {
+        PlayByPlayGenerator.write(dir, 2019, 1, 12, 17);
+        assertSamePlayerEvents(NBABigData.readData(spark, dir.toString()), false);
+    }
+
+    private static void assertSamePlayerEvents(Dataset<Row> raw, boolean keepDescriptions) {
+        EwpaWeights weights = EwpaWeights.defaults();
+        Dataset<Row> decoded = NBABigData.decodeRows(raw, keepDescriptions);
+        Dataset<Row> window = NBABigData.explodePlayerEvents(NBABigData.preprocessDecoded(decoded), spark, weights);
+        Dataset<Row> singlePass = GameProcessor.playerEvents(decoded, weights);
+
+        List<String> compared = new ArrayList<>(Arrays.asList(COMPARED));
+        if (keepDescriptions) {
+            compared.add("HOMEDESCRIPTION");
+            compared.add("VISITORDESCRIPTION");
+        }
+        assertEquals(Arrays.asList(window.columns()), Arrays.asList(singlePass.columns()));
+        List<String> expected = sortedRows(window, compared);
+        List<String> actual = sortedRows(singlePass, compared);
+        assertFalse(expected.isEmpty(), "No clutch events in the test data");
+        assertEquals(expected.size(), actual.size(), "Row count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), "Row " + i);
+        }
+    }
+
+    private static List<String> sortedRows(Dataset<Row> playerEvents, List<String> columns) {
+        List<String> rows = new ArrayList<>();
+        for (Row row : playerEvents.selectExpr(columns.toArray(new String[0])).collectAsList()) {
+            rows.add(row.toString());
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static Row raw(Integer gameId, Integer eventNum, Integer eventMsgType, Integer eventMsgActionType,
+                           Integer period, String clock, String home, String visitor, String margin,
+                           Integer player1Id, String player1Name, Integer player2Id, String player2Name,
+                           Integer player3Id, String player3Name, Integer weekOfSeason) {
+        return RowFactory.create(gameId, eventNum, eventMsgType, eventMsgActionType, period, clock, home, visitor,
+                margin, player1Id, player1Name, player2Id, player2Name, player3Id, player3Name, weekOfSeason);
+    }
+}
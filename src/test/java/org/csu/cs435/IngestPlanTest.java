@@ -0,0 +1,133 @@
+package org.csu.cs435;
+
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The read split size comes from the splittable files' ratio weighted by their size, only files sampled whole are
+// pruned by season, a file whose header doesn't match the schema fails the read, and the Parquet cache only
+// converts the seasons a run reads while keeping what earlier runs cached
+public class IngestPlanTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void start() {
+        spark = SparkSession.builder()
+                .appName("IngestPlanTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stop() {
+        spark.stop();
+    }
+
+    @Test
+    void splitSizeWeighsFilesByTheirSize(@TempDir Path dir) throws IOException {
+        PlayByPlayGenerator.write(dir, 2019, 2, 20, 5);
+        Path plain = dir.resolve("pbp_2020.csv");
+        BZip2Codec bzip2 = new BZip2Codec();
+        bzip2.setConf(spark.sparkContext().hadoopConfiguration());
+        try (CompressionOutputStream out = bzip2.createOutputStream(Files.newOutputStream(dir.resolve("pbp_2019.csv.bz2")))) {
+            out.write(Files.readAllBytes(dir.resolve("pbp_2019.csv")));
+        }
+        Files.delete(dir.resolve("pbp_2019.csv"));
+
+        IngestPlan plan = IngestPlan.create(spark, dir.toString(), null);
+        long bytes = 0;
+        double csvBytes = 0;
+        double maxRatio = 1;
+        for (IngestPlan.InputFile file : plan.kept()) {
+            assertTrue(file.splittable);
+            bytes += file.bytes;
+            csvBytes += file.csvBytes();
+            maxRatio = Math.max(maxRatio, file.ratio);
+        }
+        assertTrue(maxRatio > 2, "bzip2 sample should compress");
+
+        int taskMb = 64;
+        plan.configure(spark, taskMb);
+        long splitBytes = Long.parseLong(spark.conf().get("spark.sql.files.maxPartitionBytes"));
+        assertEquals((long) ((64L << 20) / (csvBytes / bytes)), splitBytes);
+        // Bigger than sizing everything by the bzip2 file alone would give
+        assertTrue(splitBytes > (64L << 20) / maxRatio);
+    }
+
+    @Test
+    void keepsAPartlySampledFileWhoseSampleMissesTheSeasons(@TempDir Path dir) throws IOException {
+        // Over 1 MB of 2019 first, then 2020, in one file: the sample only sees 2019
+        Path seasons = dir.resolve("seasons");
+        PlayByPlayGenerator.write(seasons, 2019, 2, 40, 5);
+        Path input = dir.resolve("in");
+        Files.createDirectories(input);
+        byte[] first = Files.readAllBytes(seasons.resolve("pbp_2019.csv"));
+        assertTrue(first.length > 1 << 20);
+        List<String> second = Files.readAllLines(seasons.resolve("pbp_2020.csv"));
+        Files.write(input.resolve("pbp_2019_2020.csv"), first);
+        Files.write(input.resolve("pbp_2019_2020.csv"), second.subList(1, second.size()), StandardOpenOption.APPEND);
+
+        IngestPlan plan = IngestPlan.create(spark, input.toString(), new int[]{2020, 2020});
+        IngestPlan.InputFile file = plan.files().get(0);
+        assertFalse(file.sampledWhole);
+        assertEquals(2019, file.lastSeason);
+        assertEquals(1, plan.kept().size());
+        long expected = NBABigData.readData(spark, seasons.resolve("pbp_2020.csv").toString()).count();
+        assertTrue(expected > 0);
+        assertEquals(expected, plan.read(spark).count());
+    }
+
+    @Test
+    void rejectsAHeaderWithMovedColumns(@TempDir Path dir) throws IOException {
+        PlayByPlayGenerator.write(dir, 2019, 1, 2, 5);
+        Path csv = dir.resolve("pbp_2019.csv");
+        List<String> lines = Files.readAllLines(csv);
+        // Swap two names in the header only, Spark would read HOMEDESCRIPTION into VISITORDESCRIPTION
+        lines.set(0, lines.get(0).replace("HOMEDESCRIPTION", "_H_").replace("VISITORDESCRIPTION", "HOMEDESCRIPTION")
+                .replace("_H_", "VISITORDESCRIPTION"));
+        Files.write(csv, lines);
+
+        Exception e = assertThrows(Exception.class, () -> NBABigData.readData(spark, dir.toString())
+                .select("HOMEDESCRIPTION", "VISITORDESCRIPTION").collectAsList());
+        Throwable cause = e;
+        while (cause.getCause() != null && !String.valueOf(cause.getMessage()).contains("header")) {
+            cause = cause.getCause();
+        }
+        assertTrue(String.valueOf(cause.getMessage()).contains("CSV header does not conform to the schema"),
+                String.valueOf(e));
+    }
+
+    @Test
+    void cacheConvertsOnlyThePlannedSeasons(@TempDir Path dir) throws IOException {
+        Path input = dir.resolve("in");
+        Path cache = dir.resolve("cache");
+        PlayByPlayGenerator.write(input, 2019, 2, 6, 5);
+
+        IngestCache.sync(spark, IngestPlan.create(spark, input.toString(), new int[]{2020, 2020}), cache.toString());
+        assertFalse(Files.exists(cache.resolve("SOURCE=pbp_2019.csv")));
+        assertTrue(Files.exists(cache.resolve("SOURCE=pbp_2020.csv")));
+        assertEquals(0, IngestCache.read(spark, cache.toString()).filter(col("SEASON").notEqual(2020)).count());
+
+        // A run over everything adds 2019, a 2019 only run after that leaves 2020 cached
+        IngestCache.sync(spark, IngestPlan.create(spark, input.toString(), null), cache.toString());
+        IngestCache.sync(spark, IngestPlan.create(spark, input.toString(), new int[]{2019, 2019}), cache.toString());
+        assertTrue(Files.exists(cache.resolve("SOURCE=pbp_2019.csv")));
+        assertTrue(Files.exists(cache.resolve("SOURCE=pbp_2020.csv")));
+        assertEquals(NBABigData.readData(spark, input.toString()).count(), IngestCache.read(spark, cache.toString()).count());
+    }
+}
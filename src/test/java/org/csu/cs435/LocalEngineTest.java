@@ -0,0 +1,196 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks the memory mapped CSV parsing of the local engine, and that --engine=local scores every player
+// the same as the Spark path (preprocessData + explodePlayerEvents + scorePlayerEvents)
+public class LocalEngineTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("LocalEngineTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "3")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void readsQuotedFields(@TempDir Path dir) throws IOException {
+        Path file = writeFixedCsv(dir);
+        PlayByPlayColumns columns = MappedCsvReader.read(file, true);
+
+        // The period 3 row is skipped
+        assertEquals(9, columns.size);
+        Map<Integer, Integer> rows = new HashMap<>();
+        for (int row = 0; row < columns.size; row++) {
+            rows.put(columns.eventNum[row], row);
+        }
+        assertFalse(rows.containsKey(1));
+
+        int shot = rows.get(2);
+        assertEquals(21900001, columns.gameId[shot]);
+        assertEquals(4, columns.period[shot]);
+        assertEquals(280, columns.secondsRemaining[shot]);
+        assertEquals(3, columns.scoreMargin[shot]);
+        assertEquals("Stockton 3PT Jump Shot, 25' (3 PTS) (Malone 1 AST)", columns.homeDescription[shot]);
+        assertNull(columns.visitorDescription[shot]);
+        assertEquals("Stockton, John", columns.playerNames[0][shot]);
+        assertEquals("Malone, Karl", columns.playerNames[1][shot]);
+        assertEquals(PlayByPlayColumns.NULL, columns.playerIds[2][shot]);
+        assertEquals(10, columns.weekOfSeason[shot]);
+        assertEquals(1 << EventCode.ASSIST | 1 << EventCode.MADE_3PT | PlayEvent.HOME_DESCRIPTION, columns.eventCodes[shot]);
+        assertEquals(DescriptionTokens.of("Stockton 3PT Jump Shot, 25' (3 PTS) (Malone 1 AST)", ""), columns.descriptionTokens[shot]);
+
+        int miss = rows.get(3);
+        assertEquals(PlayByPlayColumns.NULL, columns.scoreMargin[miss]);
+        assertEquals("MISS Jordan 15' Jump Shot", columns.visitorDescription[miss]);
+
+        int tie = rows.get(5);
+        assertEquals(0, columns.scoreMargin[tie]);
+        assertEquals("Pippen 3PT \"Pullup\" Jump Shot (12 PTS)", columns.visitorDescription[tie]);
+        assertEquals("Pippen, Scottie", columns.playerNames[0][tie]);
+
+        // Same String for a name that repeats
+        assertSame(columns.playerNames[0][shot], columns.playerNames[0][rows.get(6)]);
+
+        // Last line has no newline
+        int last = rows.get(9);
+        assertEquals(270, columns.secondsRemaining[last]);
+        assertEquals("Jordan, Michael", columns.playerNames[1][last]);
+        assertEquals(1 << EventCode.TURNOVER | 1 << EventCode.STEAL | PlayEvent.HOME_DESCRIPTION, columns.eventCodes[last]);
+
+        // Without keepDescriptions only the codes are kept
+        PlayByPlayColumns codesOnly = MappedCsvReader.read(file);
+        assertNull(codesOnly.homeDescription);
+        assertArrayEquals(Arrays.copyOf(columns.eventCodes, columns.size), Arrays.copyOf(codesOnly.eventCodes, codesOnly.size));
+        assertArrayEquals(Arrays.copyOf(columns.descriptionTokens, columns.size),
+                Arrays.copyOf(codesOnly.descriptionTokens, codesOnly.size));
+    }
+
+    @Test
+    void matchesSparkScores(@TempDir Path dir) throws IOException {
+        Path input = dir.resolve("input");
+        Files.createDirectories(input);
+        writeFixedCsv(input);
+        PlayByPlayGenerator.write(input, 2019, 1, 12, 23);
+
+        Path report = dir.resolve("report");
+        LocalEngine.run(JobOptions.parse(new String[]{input.toString(), "--report-dir=" + report, "--threads=2"}));
+
+        Dataset<Row> raw = NBABigData.readData(spark, input.toString());
+        ClutchScores sparkScores = NBABigData.scorePlayerEvents(NBABigData.explodePlayerEvents(
+                NBABigData.preprocessData(raw, spark), spark, EwpaWeights.defaults()));
+
+        Map<String, Double> expectedSeasonType = scores(sparkScores.seasonTypeScores(), "SEASON_TYPE", "Adjusted_eWPA");
+        Map<String, Double> expectedCareer = scores(sparkScores.careerScores(), null, "Total_ClutchScore");
+        assertTrue(expectedCareer.containsKey("12|Stockton, John|"), "Fixed rows not scored: " + expectedCareer.keySet());
+
+        assertScores(expectedSeasonType, scores(readReport(report, "season_type_scores"), "SEASON_TYPE", "Adjusted_eWPA"));
+        assertScores(expectedCareer, scores(readReport(report, "career_scores"), null, "Total_ClutchScore"));
+    }
+
+    private static Dataset<Row> readReport(Path report, String name) {
+        return spark.read().option("header", "true").option("inferSchema", "true").csv(report.resolve(name).toString());
+    }
+
+    // "PLAYER_ID|PLAYER_NAME|SEASON_TYPE" -> score
+    private static Map<String, Double> scores(Dataset<Row> df, String seasonType, String score) {
+        Map<String, Double> scores = new TreeMap<>();
+        for (Row row : df.collectAsList()) {
+            String key = row.getAs("PLAYER_ID").toString() + "|" + row.getAs("PLAYER_NAME") + "|"
+                    + (seasonType == null ? "" : row.getAs(seasonType));
+            scores.put(key, ((Number) row.getAs(score)).doubleValue());
+        }
+        return scores;
+    }
+
+    private static void assertScores(Map<String, Double> expected, Map<String, Double> actual) {
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            // Only the order the sums are added in differs
+            assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-9, entry.getKey());
+        }
+    }
+
+    // One hand written game with quoted fields, embedded commas and quotes, TIE and empty margins, a period
+    // that gets filtered out, an overtime and rows out of EVENTNUM order
+    private static Path writeFixedCsv(Path dir) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.join(",", PlayByPlaySchema.SCHEMA.fieldNames()));
+        lines.add(row(1, 1, 1, 3, "0:30", "Malone 18' Jump Shot (22 PTS)", null, null, "-2", 32, "\"Malone, Karl\"", null, null, null, null));
+        lines.add(row(2, 1, 1, 4, "4:40", "\"Stockton 3PT Jump Shot, 25' (3 PTS) (Malone 1 AST)\"", "\"Timeout, Jazz\"", null, "3",
+                12, "\"Stockton, John\"", 32, "\"Malone, Karl\"", null, null));
+        lines.add(row(3, 2, 1, 4, "4:20", null, null, "MISS Jordan 15' Jump Shot", null, 23, "\"Jordan, Michael\"", null, null, null, null));
+        lines.add(row(4, 4, 0, 4, "4:19", "Malone REBOUND (Off:1 Def:3)", null, null, null, 32, "\"Malone, Karl\"", null, null, null, null));
+        lines.add(row(5, 1, 1, 4, "3:20", null, null, "\"Pippen 3PT \\\"Pullup\\\" Jump Shot (12 PTS)\"", "TIE",
+                33, "\"Pippen, Scottie\"", null, null, null, null));
+        lines.add(row(6, 3, 11, 4, "0:08", "Stockton Free Throw 1 of 2 (10 PTS)", null, null, null, 12, "\"Stockton, John\"", null, null, null, null));
+        lines.add(row(7, 2, 1, 4, "0:05", "MISS Stockton 3PT Jump Shot", null, null, null, 12, "\"Stockton, John\"", null, null, null, null));
+        lines.add(row(8, 2, 1, 5, "0:03", "MISS Stockton 26' 3PT Jump Shot", null, "Pippen BLOCK (1 BLK)", "-2",
+                12, "\"Stockton, John\"", null, null, 33, "\"Pippen, Scottie\""));
+        lines.add(row(10, 1, 5, 5, "0:01", null, null, "Jordan Driving Layup (32 PTS)", "1", 23, "\"Jordan, Michael\"", null, null, null, null));
+        lines.add(row(9, 5, 2, 5, "4:30", "Stockton Lost Ball Turnover (P1.T2)", null, "Jordan STEAL (2 STL)", null,
+                12, "\"Stockton, John\"", 23, "\"Jordan, Michael\"", null, null));
+
+        Path file = dir.resolve("fixed_game.csv");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    // CSV line in PlayByPlaySchema column order, strings already quoted where needed
+    private static String row(int eventNum, int eventMsgType, int eventMsgActionType, int period, String clock,
+                              String home, String neutral, String visitor, String margin,
+                              Integer player1Id, String player1Name, Integer player2Id, String player2Name,
+                              Integer player3Id, String player3Name) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("GAME_ID", 21900001);
+        values.put("EVENTNUM", eventNum);
+        values.put("EVENTMSGTYPE", eventMsgType);
+        values.put("EVENTMSGACTIONTYPE", eventMsgActionType);
+        values.put("PERIOD", period);
+        values.put("WCTIMESTRING", "9:41 PM");
+        values.put("PCTIMESTRING", clock);
+        values.put("HOMEDESCRIPTION", home);
+        values.put("NEUTRALDESCRIPTION", neutral);
+        values.put("VISITORDESCRIPTION", visitor);
+        values.put("SCOREMARGIN", margin);
+        values.put("PLAYER1_ID", player1Id);
+        values.put("PLAYER1_NAME", player1Name);
+        values.put("PLAYER1_TEAM_CITY", "\"Salt Lake City, UT\"");
+        values.put("PLAYER2_ID", player2Id);
+        values.put("PLAYER2_NAME", player2Name);
+        values.put("PLAYER3_ID", player3Id);
+        values.put("PLAYER3_NAME", player3Name);
+        values.put("WEEK_OF_SEASON", 10);
+        StringJoiner line = new StringJoiner(",");
+        for (String column : PlayByPlaySchema.SCHEMA.fieldNames()) {
+            Object value = values.get(column);
+            line.add(value == null ? "" : value.toString());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,125 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.OutputMode;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.Trigger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Streams a generated season in two files and checks the Complete mode totals against the batch scores after
+// each trigger. Each trigger is a separate run from the same checkpoint. The split falls inside a game, so its
+// margin has to come from the state store, and the second file replays all of the first one, which has to be
+// skipped by EVENTNUM instead of counted twice
+public class StreamingClutchTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("StreamingClutchTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "3")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void totalsMatchBatchScoresAcrossTriggers(@TempDir Path dir) throws Exception {
+        Path generated = dir.resolve("generated");
+        PlayByPlayGenerator.write(generated, 2019, 1, 40, 11);
+        List<String> lines = Files.readAllLines(generated.resolve("pbp_2019.csv"));
+        String header = lines.get(0);
+        int split = lines.size() / 2;
+        List<String> first = lines.subList(1, split);
+        List<String> second = lines.subList(split, lines.size());
+        // The split is inside a game: the second file carries on a game the first one started
+        assertEquals(first.get(first.size() - 1).split(",")[0], second.get(0).split(",")[0]);
+
+        Path batch1 = dir.resolve("batch1");
+        write(batch1.resolve("part1.csv"), header, first);
+
+        Path input = dir.resolve("in");
+        Files.createDirectories(input);
+        EwpaWeights weights = EwpaWeights.defaults();
+        SparkSession session = StreamingClutch.session(spark, 2);
+        Path checkpoint = dir.resolve("checkpoint");
+
+        Files.copy(batch1.resolve("part1.csv"), input.resolve("part1.csv"));
+        assertSameTotals(batchScores(batch1, weights), runOnce(session, input, checkpoint, weights));
+
+        // The replayed rows go first, so a game's old EVENTNUMs and its new ones arrive in the same trigger
+        List<String> replayed = new ArrayList<>(first);
+        replayed.addAll(second);
+        Path part2 = dir.resolve("part2.csv");
+        write(part2, header, replayed);
+        Files.move(part2, input.resolve("part2.csv"));
+        assertSameTotals(batchScores(generated, weights), runOnce(session, input, checkpoint, weights));
+    }
+
+    // One trigger over whatever is new since the checkpoint, then the Complete mode totals it wrote. The game
+    // state timeout keeps a running query busy with no-data triggers, so each trigger is its own run
+    private static Dataset<Row> runOnce(SparkSession session, Path input, Path checkpoint, EwpaWeights weights)
+            throws Exception {
+        StreamingQuery query = StreamingClutch.totals(session, input.toString(), weights, "6 hours")
+                .writeStream()
+                .format("memory")
+                .queryName("stream_totals")
+                .outputMode(OutputMode.Complete())
+                .option("checkpointLocation", checkpoint.toString())
+                .trigger(Trigger.Once())
+                .start();
+        query.awaitTermination();
+        return session.table("stream_totals");
+    }
+
+    // (PLAYER_ID, SEASON_TYPE) -> Total_eWPA from the batch window path
+    private static Map<String, Double> batchScores(Path input, EwpaWeights weights) {
+        Dataset<Row> playerData = NBABigData.explodePlayerEvents(
+                NBABigData.preprocessData(NBABigData.readData(spark, input.toString()), spark), spark, weights);
+        Map<String, Double> scores = new HashMap<>();
+        for (Row row : NBABigData.scorePlayerEvents(playerData).seasonTypeScores().collectAsList()) {
+            scores.put(row.get(0) + "|" + row.getString(2), row.getDouble(3));
+        }
+        assertFalse(scores.isEmpty(), "No clutch events in the test data");
+        return scores;
+    }
+
+    private static void assertSameTotals(Map<String, Double> expected, Dataset<Row> totals) {
+        Map<String, Double> actual = new HashMap<>();
+        for (Row row : totals.select("PLAYER_ID", "SEASON_TYPE", "Total_eWPA").collectAsList()) {
+            actual.put(row.get(0) + "|" + row.getString(1), row.getDouble(2));
+        }
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Double> score : expected.entrySet()) {
+            assertEquals(score.getValue(), actual.get(score.getKey()), 1e-9, score.getKey());
+        }
+    }
+
+    private static void write(Path file, String header, List<String> rows) throws Exception {
+        Files.createDirectories(file.getParent());
+        List<String> lines = new ArrayList<>();
+        lines.add(header);
+        lines.addAll(rows);
+        Files.write(file, lines);
+    }
+}
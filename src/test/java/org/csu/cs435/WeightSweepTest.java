@@ -0,0 +1,92 @@
+package org.csu.cs435;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks that the sweep's count matrix times the weight matrix gives the scores scorePlayerEvents gives for the
+// same weights, per season type and Career
+public class WeightSweepTest {
+
+    private static SparkSession spark;
+
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .appName("WeightSweepTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "3")
+                .getOrCreate();
+    }
+
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    void defaultWeightsMatchTheScorer(@TempDir Path dir) throws IOException {
+        Path input = dir.resolve("in");
+        PlayByPlayGenerator.write(input, 2019, 1, 120, 23);
+        EwpaWeights weights = EwpaWeights.defaults();
+        Dataset<Row> playerData = NBABigData.explodePlayerEvents(
+                NBABigData.preprocessData(NBABigData.readData(spark, input.toString()), spark), spark, weights).cache();
+
+        // One set that changes nothing, so it scores with the base weights
+        Path sweep = dir.resolve("sweep.csv");
+        Files.write(sweep, "set\ndefaults\n".getBytes());
+        Path out = dir.resolve("rankings.csv");
+        WeightSweep.run(spark, JobOptions.parse(new String[]{input.toString(), "--sweep=" + sweep,
+                "--sweep-top=" + Integer.MAX_VALUE, "--sweep-out=" + out}), playerData, weights);
+
+        // SEASON_TYPE|PLAYER_ID -> eWPA, from "set,SEASON_TYPE,rank,PLAYER_ID,PLAYER_NAME,eWPA"
+        Map<String, Double> swept = new HashMap<>();
+        List<String> lines = Files.readAllLines(out);
+        assertEquals("set,SEASON_TYPE,rank,PLAYER_ID,PLAYER_NAME,eWPA", lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            assertNull(swept.put(fields[1] + "|" + fields[3], Double.parseDouble(fields[fields.length - 1])), line);
+        }
+
+        ClutchScores scores = NBABigData.scorePlayerEvents(playerData);
+        Map<String, Double> expected = new HashMap<>();
+        for (Row row : scores.seasonTypeScores().collectAsList()) {
+            expected.put(row.getString(2) + "|" + row.get(0), row.getDouble(3));
+        }
+        for (Row row : scores.careerScores().collectAsList()) {
+            expected.put(WeightSweep.CAREER + "|" + row.get(0), row.getDouble(2));
+        }
+        Set<String> seasonTypes = new HashSet<>();
+        for (String key : expected.keySet()) {
+            seasonTypes.add(key.substring(0, key.indexOf('|')));
+        }
+        assertTrue(seasonTypes.size() > 2, "Want more than one season type plus Career, got " + seasonTypes);
+
+        for (Map.Entry<String, Double> score : expected.entrySet()) {
+            assertTrue(swept.containsKey(score.getKey()), "Sweep is missing " + score.getKey());
+            assertEquals(score.getValue(), swept.get(score.getKey()), 1e-9, score.getKey());
+        }
+        // The scorer drops events worth 0, the sweep still counts them, so anything only in the sweep scores 0
+        for (Map.Entry<String, Double> score : swept.entrySet()) {
+            if (!expected.containsKey(score.getKey())) {
+                assertEquals(0.0, score.getValue(), 1e-9, score.getKey());
+            }
+        }
+    }
+}
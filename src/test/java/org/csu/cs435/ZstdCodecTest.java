@@ -0,0 +1,166 @@
+package org.csu.cs435;
+
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Round trips through ZstdCodec: finish() ends a frame without closing the stream and can be called again,
+// close() finishes once, frames after a finish read back as one stream, and Spark reads a .csv.zst through it
+public class ZstdCodecTest {
+
+    @Test
+    void roundTrips() throws IOException {
+        byte[] data = sampleBytes(3 << 20);
+        TrackingOutputStream file = new TrackingOutputStream();
+        try (CompressionOutputStream out = new ZstdCodec().createOutputStream(file)) {
+            out.write(data[0]);
+            out.write(data, 1, data.length - 1);
+        }
+        assertTrue(file.closed);
+        assertTrue(file.size() < data.length);
+
+        assertArrayEquals(data, readAll(new ZstdCodec().createInputStream(new ByteArrayInputStream(file.toByteArray()))));
+        // Plain zstd frames, readable without the codec
+        assertArrayEquals(data, readAll(new ZstdInputStreamNoFinalizer(new ByteArrayInputStream(file.toByteArray()))));
+    }
+
+    @Test
+    void finishEndsTheFrameAndLeavesTheStreamOpen() throws IOException {
+        byte[] first = "GAME_ID,EVENTNUM\n".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "21900001,1\n".getBytes(StandardCharsets.UTF_8);
+        TrackingOutputStream file = new TrackingOutputStream();
+        CompressionOutputStream out = new ZstdCodec().createOutputStream(file);
+
+        out.write(first);
+        out.finish();
+        int firstFrame = file.size();
+        out.finish();
+        assertFalse(file.closed);
+        assertEquals(firstFrame, file.size(), "Second finish() wrote more");
+        assertArrayEquals(first, readAll(new ZstdCodec().createInputStream(new ByteArrayInputStream(file.toByteArray()))));
+
+        // After finish (and the reset CodecPool users do) the next write starts a new frame
+        out.resetState();
+        out.write(second);
+        out.close();
+        assertTrue(file.closed);
+        byte[] both = new byte[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        assertArrayEquals(both, readAll(new ZstdCodec().createInputStream(new ByteArrayInputStream(file.toByteArray()))));
+    }
+
+    @Test
+    void emptyStreamReadsBackEmpty() throws IOException {
+        TrackingOutputStream file = new TrackingOutputStream();
+        new ZstdCodec().createOutputStream(file).close();
+        assertTrue(file.closed);
+        assertEquals(0, readAll(new ZstdCodec().createInputStream(new ByteArrayInputStream(file.toByteArray()))).length);
+    }
+
+    @Test
+    void inputResetStartsOverFromTheUnderlyingPosition() throws IOException {
+        byte[] data = sampleBytes(100_000);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (CompressionOutputStream out = new ZstdCodec().createOutputStream(file)) {
+            out.write(data);
+        }
+
+        TrackingInputStream compressed = new TrackingInputStream(file.toByteArray());
+        CompressionInputStream in = new ZstdCodec().createInputStream(compressed);
+        assertTrue(in.read(new byte[1000]) > 0);
+        // Reposition the underlying stream to the start, as a seek would
+        compressed.reset();
+        in.resetState();
+        // Releasing the old decoder leaves the underlying stream open
+        assertFalse(compressed.closed);
+        assertArrayEquals(data, readAll(in));
+        in.close();
+        assertTrue(compressed.closed);
+    }
+
+    @Test
+    void sparkReadsZstdCsv(@TempDir Path dir) throws IOException {
+        Path plain = dir.resolve("plain");
+        Path compressed = dir.resolve("zstd");
+        Files.createDirectories(compressed);
+        PlayByPlayGenerator.write(plain, 2019, 1, 6, 5);
+        for (Path csv : Files.newDirectoryStream(plain, "*.csv")) {
+            try (CompressionOutputStream out = new ZstdCodec().createOutputStream(
+                    Files.newOutputStream(compressed.resolve(csv.getFileName() + ".zst")))) {
+                out.write(Files.readAllBytes(csv));
+            }
+        }
+
+        SparkSession spark = SparkSession.builder()
+                .appName("ZstdCodecTest")
+                .master("local[2]")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+        try {
+            long expected = NBABigData.readData(spark, plain.toString()).count();
+            assertTrue(expected > 0);
+            assertEquals(expected, NBABigData.readData(spark, compressed.toString()).count());
+        } finally {
+            spark.stop();
+        }
+    }
+
+    // Play-by-play like text, compressible but not trivially
+    private static byte[] sampleBytes(int length) {
+        Random random = new Random(435);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(21900000 + random.nextInt(1230)).append(',').append(random.nextInt(500))
+                    .append(",MISS Stockton ").append(random.nextInt(30)).append("' 3PT Jump Shot\n");
+        }
+        return text.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = stream.read(buffer, 0, buffer.length)) >= 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+        boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static final class TrackingOutputStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}